@@ -15,9 +15,26 @@ CREATE TABLE IF NOT EXISTS users (
     id BIGSERIAL PRIMARY KEY,
     username VARCHAR(100) UNIQUE NOT NULL,
     password VARCHAR(255) NOT NULL,
-    email VARCHAR(255) NOT NULL
+    email VARCHAR(255) NOT NULL,
+    token_version BIGINT NOT NULL DEFAULT 0,
+    change_seq BIGINT NOT NULL DEFAULT 0
 );
 
+-- id пользователей и ролей выдаются приложением блоками по 50 (pooled-lo),
+-- поэтому шаг последовательностей должен совпадать с allocationSize сущностей
+ALTER SEQUENCE roles_id_seq INCREMENT BY 50;
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+
+-- Индексы для поиска по префиксу имени и email без учета регистра
+CREATE INDEX IF NOT EXISTS idx_users_username_lower ON users (lower(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users (lower(email) text_pattern_ops);
+
+-- Индекс для проверки занятости email (регистрация, массовая загрузка)
+CREATE INDEX IF NOT EXISTS idx_users_email ON users (email);
+
+-- Индекс для выборки изменений после номера (/api/user/changes)
+CREATE INDEX IF NOT EXISTS idx_users_change_seq ON users (change_seq);
+
 -- Таблица связи пользователей и ролей
 CREATE TABLE IF NOT EXISTS user_roles (
     user_id BIGINT NOT NULL,
@@ -27,6 +44,59 @@ CREATE TABLE IF NOT EXISTS user_roles (
     FOREIGN KEY (role_id) REFERENCES roles(id) ON DELETE CASCADE
 );
 
+-- Присутствие пользователей (app.presence.store=jdbc): время последней активности в мс
+-- и время удаления из активных (выход); активен, если last_seen новее removed_at.
+-- Для таблицы, созданной до появления removed_at: database/migrate_presence_removed_at.sql
+CREATE TABLE IF NOT EXISTS user_presence (
+    user_id BIGINT PRIMARY KEY,
+    last_seen BIGINT NOT NULL,
+    removed_at BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_presence_last_seen ON user_presence (last_seen);
+
+-- Отозванные при выходе токены (по jti) до истечения их срока, мс с начала эпохи
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    jti VARCHAR(64) PRIMARY KEY,
+    expires_at BIGINT NOT NULL,
+    revoked_at BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
+
+-- Refresh token: SHA-256 от выданного значения, цепочка ротаций (family_id), время использования
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    token_hash VARCHAR(64) PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    family_id VARCHAR(36) NOT NULL,
+    token_version BIGINT NOT NULL,
+    expires_at BIGINT NOT NULL,
+    used_at BIGINT,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_family_id ON refresh_tokens (family_id);
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_expires_at ON refresh_tokens (expires_at);
+
+-- Счетчик изменений пользователей (одна строка) и отметки об удалении для /api/user/changes
+CREATE TABLE IF NOT EXISTS user_change_counter (
+    id INTEGER PRIMARY KEY,
+    seq BIGINT NOT NULL,
+    purged_seq BIGINT NOT NULL
+);
+
+INSERT INTO user_change_counter (id, seq, purged_seq) VALUES (1, 0, 0) ON CONFLICT (id) DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS user_tombstones (
+    user_id BIGINT PRIMARY KEY,
+    change_seq BIGINT NOT NULL,
+    deleted_at BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_tombstones_change_seq ON user_tombstones (change_seq);
+CREATE INDEX IF NOT EXISTS idx_user_tombstones_deleted_at ON user_tombstones (deleted_at);
+
 -- Вставка ролей
 INSERT INTO roles (name) VALUES ('USER') ON CONFLICT (name) DO NOTHING;
 INSERT INTO roles (name) VALUES ('ADMIN') ON CONFLICT (name) DO NOTHING;
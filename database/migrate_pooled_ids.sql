@@ -0,0 +1,24 @@
+-- Переход id пользователей и ролей с IDENTITY на последовательности с выдачей блоками
+-- (allocationSize = 50, оптимизатор pooled-lo). Выполнить один раз до запуска новой
+-- версии приложения; при несовпадении шага Hibernate не даст приложению запуститься.
+--
+-- Подходит и для таблиц из init.sql (BIGSERIAL), и для созданных Hibernate
+-- (GENERATED BY DEFAULT AS IDENTITY). Существующие id не меняются: следующий блок
+-- начинается после текущего максимума.
+
+DO $$
+DECLARE
+    t TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['roles', 'users'] LOOP
+        IF EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_name = t AND column_name = 'id' AND is_identity = 'YES') THEN
+            -- Последовательность identity-колонки меняется через ALTER TABLE
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET INCREMENT BY 50', t);
+        ELSE
+            EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50', t || '_id_seq');
+        END IF;
+        EXECUTE format('SELECT setval(pg_get_serial_sequence(%L, ''id''), COALESCE(MAX(id), 0) + 1, false) FROM %I',
+                       t, t);
+    END LOOP;
+END $$;
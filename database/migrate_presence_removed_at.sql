@@ -0,0 +1,6 @@
+-- Колонка removed_at в user_presence (отметка о выходе для остальных узлов). Выполнить
+-- один раз до запуска новой версии с app.presence.store=jdbc, если таблица создана
+-- прежним init.sql. При ddl-auto=update Hibernate добавляет колонку сам: DEFAULT 0
+-- заполняет существующие строки, поэтому NOT NULL не мешает.
+
+ALTER TABLE user_presence ADD COLUMN IF NOT EXISTS removed_at BIGINT NOT NULL DEFAULT 0;
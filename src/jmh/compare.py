@@ -0,0 +1,105 @@
+#!/usr/bin/env python3
+"""
+Сравнение результатов JMH (-rf json) с базовыми.
+
+Бенчмарки сопоставляются по имени и параметрам. Для режима thrpt больше -
+лучше, для avgt/sample/ss меньше - лучше. Регрессией считается ухудшение
+больше порога (по умолчанию 10%), при котором доверительные интервалы
+(score +- scoreError, 99.9%) не пересекаются: разница в пределах шума не
+считается. При регрессиях код возврата 1.
+
+Базовые результаты записаны с -f 3 -wi 5 -i 5; сравнивать имеет смысл прогоны
+с теми же параметрами на той же JDK (при другой JDK выводится предупреждение):
+  mvn -Pjmh test-compile exec:exec -Djmh.args="-f 3 -wi 5 -i 5 -rf json -rff target/jmh.json"
+  python3 src/jmh/compare.py src/jmh/baseline.json target/jmh.json [--threshold 10]
+"""
+import argparse
+import json
+import math
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for entry in json.load(f):
+            params = ",".join(f"{k}={v}" for k, v in sorted(entry.get("params", {}).items()))
+            key = (entry["benchmark"], params, entry["mode"])
+            results[key] = entry
+        return results
+
+
+def interval(entry):
+    metric = entry["primaryMetric"]
+    score = metric["score"]
+    # При одной итерации JMH не считает ошибку ("NaN")
+    error = float(metric.get("scoreError", 0) or 0)
+    if math.isnan(error):
+        error = 0.0
+    return score, error
+
+
+def jdks(results):
+    return {(entry.get("jdkVersion"), entry.get("vmName")) for entry in results.values()}
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Сравнение результатов JMH с базовыми")
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0, help="допустимое ухудшение, %%")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+
+    if jdks(baseline) != jdks(current):
+        print(f"ВНИМАНИЕ: базовые результаты получены на {sorted(jdks(baseline))}, "
+              f"текущие - на {sorted(jdks(current))}; сравнение неточно\n")
+
+    print(f"{'benchmark':70} {'mode':6} {'baseline':>20} {'current':>20} {'change':>9}")
+    for key in sorted(current):
+        benchmark, params, mode = key
+        name = benchmark.rsplit(".", 2)[-2] + "." + benchmark.rsplit(".", 1)[-1]
+        if params:
+            name += f" [{params}]"
+        score, error = interval(current[key])
+        unit = current[key]["primaryMetric"]["scoreUnit"]
+        if key not in baseline:
+            print(f"{name:70} {mode:6} {'-':>20} {format_score(score, error):>20} {'new':>9}")
+            continue
+        base, base_error = interval(baseline[key])
+        change = (score - base) / base * 100 if base else 0.0
+        # Для пропускной способности падение - ухудшение, для времени - рост
+        if mode == "thrpt":
+            worse = -change
+            separated = score + error < base - base_error
+        else:
+            worse = change
+            separated = score - error > base + base_error
+        mark = ""
+        if worse > args.threshold and separated:
+            mark = "  REGRESSION"
+            regressions += 1
+        elif worse > args.threshold:
+            mark = "  (в пределах ошибки)"
+        print(f"{name:70} {mode:6} {format_score(base, base_error):>20} {format_score(score, error):>20} "
+              f"{change:>+8.1f}%{mark}  {unit}")
+
+    missing = sorted(set(baseline) - set(current))
+    for benchmark, params, mode in missing:
+        print(f"{benchmark} [{params}] {mode}: нет в текущих результатах")
+
+    if regressions:
+        print(f"\nРегрессий: {regressions} (порог {args.threshold}%)")
+        return 1
+    return 0
+
+
+def format_score(score, error):
+    return f"{score:.3f} ± {error:.3f}"
+
+
+if __name__ == "__main__":
+    sys.exit(main())
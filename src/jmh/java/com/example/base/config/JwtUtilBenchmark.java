@@ -0,0 +1,82 @@
+package com.example.base.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и проверка JWT: JwtUtil с настоящими JwtKeyRing и JwtTokenCache
+ * в минимальном контексте Spring.
+ *
+ * cache=false - каждый разбор проверяет подпись, cache=true - повторный токен
+ * берется из кэша проверенных токенов (как для запросов одного клиента).
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="JwtUtilBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+    
+    @Param({"HS256", "EdDSA"})
+    public String algorithm;
+    
+    @Param({"true", "false"})
+    public boolean cache;
+    
+    private AnnotationConfigApplicationContext context;
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+    private String token;
+    
+    @Setup
+    public void setup() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+            "jwt.secret", "benchmark-secret-key-that-is-long-enough-for-hs256",
+            "jwt.expiration", "86400000",
+            "jwt.signing.algorithm", algorithm,
+            "jwt.cache.enabled", String.valueOf(cache))));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(JwtKeyRing.class, JwtTokenCache.class, JwtUtil.class);
+        context.refresh();
+        
+        jwtUtil = context.getBean(JwtUtil.class);
+        userDetails = User.withUsername("user42")
+            .password("")
+            .authorities(List.of(new SimpleGrantedAuthority("ROLE_USER")))
+            .build();
+        token = jwtUtil.generateToken(userDetails, false, 42L, 0L);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(userDetails, false, 42L, 0L);
+    }
+    
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+    
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, userDetails);
+    }
+}
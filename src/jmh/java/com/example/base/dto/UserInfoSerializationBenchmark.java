@@ -0,0 +1,53 @@
+package com.example.base.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация страницы List<UserInfo> в JSON (ответы /api/user/list и /active)
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="UserInfoSerializationBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserInfoSerializationBenchmark {
+    
+    // Размер страницы: по умолчанию, максимальный для списка и для активных
+    @Param({"50", "500", "1000"})
+    public int size;
+    
+    private ObjectWriter writer;
+    private List<UserInfo> users;
+    
+    @Setup
+    public void setup() {
+        // Модули те же, что находит Spring Boot на classpath
+        writer = JsonMapper.builder().findAndAddModules().build()
+            .writerFor(new TypeReference<List<UserInfo>>() {
+            });
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            UserInfo user = new UserInfo((long) i, "user" + i, "user" + i + "@example.com", i % 10 == 0);
+            if (i % 2 == 0) {
+                user.setLastActivity(1_700_000_000_000L + i);
+            }
+            users.add(user);
+        }
+    }
+    
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(users);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.base.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User.isAdmin: поиск роли ADMIN потоком по набору ролей
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="model.UserBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserBenchmark {
+    
+    // user - только USER (поток просматривает все роли), admin - USER и ADMIN
+    @Param({"user", "admin"})
+    public String roles;
+    
+    private User user;
+    
+    @Setup
+    public void setup() {
+        Set<Role> userRoles = new HashSet<>();
+        userRoles.add(new Role(1L, Role.RoleType.USER));
+        if ("admin".equals(roles)) {
+            userRoles.add(new Role(2L, Role.RoleType.ADMIN));
+        }
+        user = new User(1L, "user", "", "user@example.com", userRoles);
+    }
+    
+    @Benchmark
+    public boolean isAdmin() {
+        return user.isAdmin();
+    }
+}
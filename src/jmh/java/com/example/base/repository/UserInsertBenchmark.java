@@ -0,0 +1,158 @@
+package com.example.base.repository;
+
+import jakarta.persistence.*;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Вставка пользователей через Hibernate: прежние id IDENTITY против последовательности
+ * с выдачей блоками (pooled-lo). Настройки пакетной записи одинаковые (как в JpaConfig),
+ * но с IDENTITY Hibernate выполняет каждую вставку сразу, и пакеты не собираются.
+ *
+ * Каждый замер - rows пользователей транзакциями по chunk строк.
+ *
+ * Запуск (H2 в памяти): mvn -Pjmh test-compile exec:exec -Djmh.args="UserInsertBenchmark"
+ * PostgreSQL: добавить к jmh.args -jvmArgsAppend "-Dbench.jdbc.url=jdbc:postgresql://localhost:5432/base_db?reWriteBatchedInserts=true
+ * -Dbench.jdbc.user=... -Dbench.jdbc.password=..." (таблицы bench_* создаются и удаляются бенчмарком)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserInsertBenchmark {
+    
+    private static final String PASSWORD_HASH = "$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iwK8pJ5C";
+    
+    @Param({"100000"})
+    public int rows;
+    
+    @Param({"1000"})
+    public int chunk;
+    
+    private SessionFactory sessionFactory;
+    
+    @Entity(name = "IdentityUser")
+    @Table(name = "bench_identity_users")
+    public static class IdentityUser {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+        
+        @Column(unique = true, nullable = false)
+        private String username;
+        
+        @Column(nullable = false)
+        private String password;
+        
+        @Column(nullable = false)
+        private String email;
+        
+        @Column(name = "token_version", nullable = false)
+        private long tokenVersion;
+        
+        public IdentityUser() {
+        }
+        
+        private IdentityUser(long n) {
+            this.username = "user" + n;
+            this.password = PASSWORD_HASH;
+            this.email = "user" + n + "@example.com";
+        }
+    }
+    
+    @Entity(name = "PooledUser")
+    @Table(name = "bench_pooled_users")
+    public static class PooledUser {
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_pooled_users_id_seq")
+        @SequenceGenerator(name = "bench_pooled_users_id_seq", sequenceName = "bench_pooled_users_id_seq", allocationSize = 50)
+        private Long id;
+        
+        @Column(unique = true, nullable = false)
+        private String username;
+        
+        @Column(nullable = false)
+        private String password;
+        
+        @Column(nullable = false)
+        private String email;
+        
+        @Column(name = "token_version", nullable = false)
+        private long tokenVersion;
+        
+        public PooledUser() {
+        }
+        
+        private PooledUser(long n) {
+            this.username = "user" + n;
+            this.password = PASSWORD_HASH;
+            this.email = "user" + n + "@example.com";
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+            .applySetting(AvailableSettings.JAKARTA_JDBC_URL, System.getProperty("bench.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1"))
+            .applySetting(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("bench.jdbc.user", "sa"))
+            .applySetting(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("bench.jdbc.password", ""))
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+            .applySetting(AvailableSettings.ORDER_INSERTS, "true")
+            .applySetting(AvailableSettings.ORDER_UPDATES, "true")
+            .applySetting(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+            .build();
+        sessionFactory = new MetadataSources(registry)
+            .addAnnotatedClass(IdentityUser.class)
+            .addAnnotatedClass(PooledUser.class)
+            .buildMetadata()
+            .buildSessionFactory();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+    
+    // Каждый замер начинается с пустых таблиц
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            session.createMutationQuery("delete from IdentityUser").executeUpdate();
+            session.createMutationQuery("delete from PooledUser").executeUpdate();
+        });
+    }
+    
+    @Benchmark
+    public void identity() {
+        insert(IdentityUser::new);
+    }
+    
+    @Benchmark
+    public void pooled() {
+        insert(PooledUser::new);
+    }
+    
+    private void insert(LongFunction<Object> factory) {
+        try (Session session = sessionFactory.openSession()) {
+            for (int from = 0; from < rows; from += chunk) {
+                session.beginTransaction();
+                for (int n = from; n < Math.min(from + chunk, rows); n++) {
+                    session.persist(factory.apply(n));
+                }
+                session.getTransaction().commit();
+                session.clear();
+            }
+        }
+    }
+}
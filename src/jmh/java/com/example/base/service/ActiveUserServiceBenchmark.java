@@ -0,0 +1,87 @@
+package com.example.base.service;
+
+import com.example.base.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ActiveUserService с хранилищем в памяти: отметка активности при конкуренции
+ * потоков и подсчет активных при разном размере таблицы присутствия.
+ *
+ * Таблица заранее заполнена entries пользователями; markUserActive8 отмечает
+ * случайных пользователей из них в 8 потоков.
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="ActiveUserServiceBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActiveUserServiceBenchmark {
+    
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+    
+    private AnnotationConfigApplicationContext context;
+    private ActiveUserService activeUserService;
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = (int) Thread.currentThread().threadId() * 0x9E3779B9 | 1;
+    }
+    
+    @Setup
+    public void setup() {
+        // Для отметки по id и подсчета БД и кэш пользователей не нужны
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(SimpleMeterRegistry.class);
+        context.registerBean(UserRepository.class, () -> Mockito.mock(UserRepository.class));
+        context.registerBean(UserCache.class, () -> Mockito.mock(UserCache.class));
+        context.register(CoarseClock.class, InMemoryActiveUserStore.class, ActiveUserService.class);
+        context.refresh();
+        
+        activeUserService = context.getBean(ActiveUserService.class);
+        for (int userId = 1; userId <= entries; userId++) {
+            activeUserService.markUserActive(userId);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void markUserActive1(Cursor cursor) {
+        activeUserService.markUserActive(next(cursor));
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public void markUserActive8(Cursor cursor) {
+        activeUserService.markUserActive(next(cursor));
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public int getActiveUsersCount() {
+        return activeUserService.getActiveUsersCount();
+    }
+    
+    private long next(Cursor cursor) {
+        // Xorshift: дешевле ThreadLocalRandom и не влияет на измерение
+        int x = cursor.index;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        cursor.index = x;
+        return (x & Integer.MAX_VALUE) % entries + 1;
+    }
+}
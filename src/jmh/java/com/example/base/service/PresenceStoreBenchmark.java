@@ -0,0 +1,137 @@
+package com.example.base.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение хранилища активности: прежняя ConcurrentHashMap по имени пользователя
+ * с System.currentTimeMillis() на каждый запрос против LongLongPresenceTable по id
+ * с грубыми часами и пропуском записи в пределах гранулярности.
+ *
+ * hot - все потоки отмечают одного пользователя, spread - случайного из users.
+ *
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="PresenceStoreBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresenceStoreBenchmark {
+    
+    private static final long GRANULARITY = 1000;
+    private static final long CLOCK_RESOLUTION = 50;
+    
+    @Param({"hot", "spread"})
+    public String keys;
+    
+    @Param({"10000"})
+    public int users;
+    
+    private Map<String, Long> map;
+    private LongLongPresenceTable table;
+    private String[] usernames;
+    
+    private volatile long coarseNow;
+    private volatile boolean running;
+    private Thread ticker;
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt();
+    }
+    
+    @Setup
+    public void setup() {
+        map = new ConcurrentHashMap<>();
+        table = new LongLongPresenceTable(64, 1024);
+        usernames = new String[users];
+        for (int i = 0; i < users; i++) {
+            usernames[i] = "user" + i;
+        }
+        
+        // Те же грубые часы, что и CoarseClock, без контекста Spring
+        coarseNow = System.currentTimeMillis();
+        running = true;
+        ticker = new Thread(() -> {
+            while (running) {
+                coarseNow = System.currentTimeMillis();
+                try {
+                    Thread.sleep(CLOCK_RESOLUTION);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        running = false;
+        ticker.interrupt();
+    }
+    
+    private int next(Cursor cursor) {
+        if ("hot".equals(keys)) {
+            return 0;
+        }
+        // Xorshift: дешевле ThreadLocalRandom и не влияет на измерение
+        int x = cursor.index;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        cursor.index = x;
+        return (x & Integer.MAX_VALUE) % users;
+    }
+    
+    private Long markMap(Cursor cursor) {
+        return map.put(usernames[next(cursor)], System.currentTimeMillis());
+    }
+    
+    private long markTable(Cursor cursor) {
+        return table.touch(next(cursor) + 1, coarseNow, GRANULARITY);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public Long map1(Cursor cursor) {
+        return markMap(cursor);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public Long map8(Cursor cursor) {
+        return markMap(cursor);
+    }
+    
+    @Benchmark
+    @Threads(64)
+    public Long map64(Cursor cursor) {
+        return markMap(cursor);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public long table1(Cursor cursor) {
+        return markTable(cursor);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public long table8(Cursor cursor) {
+        return markTable(cursor);
+    }
+    
+    @Benchmark
+    @Threads(64)
+    public long table64(Cursor cursor) {
+        return markTable(cursor);
+    }
+}
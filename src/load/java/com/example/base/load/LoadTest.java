@@ -0,0 +1,410 @@
+package com.example.base.load;
+
+import com.example.base.BaseApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест в одной JVM: приложение стартует на H2 в режиме PostgreSQL,
+ * заводятся пользователи, затем запросы /api/auth/login, /api/user/me,
+ * /api/user/list и /api/user/active подаются с заданной частотой.
+ *
+ * Открытая модель: запросы отправляются по расписанию независимо от ответов,
+ * каждый в своем виртуальном потоке; задержка считается от запланированного
+ * момента отправки, поэтому отставание сервера не скрывается. По каждому
+ * эндпоинту задержки пишутся в HdrHistogram (p50/p99/p999), распределения -
+ * в target/load/*.hgrm. При нарушении порогов из load-thresholds.properties
+ * код возврата 1 и сборка падает.
+ *
+ * Запуск: mvn -Pload test-compile exec:exec -Dload.args="--load.rate=300 --load.duration=60"
+ *
+ * Параметры --load.*: rate (запросов в секунду, по умолчанию 50), warmup и duration (с), users
+ * (количество пользователей), mix (доли эндпоинтов), thresholds (файл порогов
+ * вместо ресурса). Остальные аргументы передаются приложению, например
+ * --jwt.signing.algorithm=EdDSA.
+ */
+public class LoadTest {
+    
+    private static final String PASSWORD = "load-password";
+    
+    // Задержки больше минуты считаются минутой
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    
+    // Проверяемые перцентили: имя в файле порогов -> перцентиль
+    private static final Map<String, Double> PERCENTILES = new LinkedHashMap<>();
+    
+    static {
+        PERCENTILES.put("p50", 50.0);
+        PERCENTILES.put("p99", 99.0);
+        PERCENTILES.put("p999", 99.9);
+    }
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> options;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    
+    private String[] usernames;
+    private String[] tokens;
+    private String adminToken;
+    
+    private LoadTest(Map<String, String> options, int port, ExecutorService executor) {
+        this.options = options;
+        this.baseUrl = "http://localhost:" + port;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--load.") && arg.contains("=")) {
+                options.put(arg.substring(7, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                appArgs.add(arg);
+            }
+        }
+        
+        // devtools перезапускал бы приложение в отдельном загрузчике классов
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(BaseApplication.class);
+        application.setDefaultProperties(defaultProperties());
+        ConfigurableApplicationContext context = application.run(appArgs.toArray(new String[0]));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        
+        boolean passed;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            LoadTest test = new LoadTest(options, port, executor);
+            test.seed();
+            test.run(executor);
+            passed = test.report(System.out);
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+    
+    /**
+     * Настройки приложения для теста; аргументы командной строки их переопределяют
+     */
+    private static Map<String, Object> defaultProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:load;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("jwt.secret", "load-test-secret-key-that-is-long-enough-for-hs256");
+        properties.put("jwt.expiration", "86400000");
+        // Все запросы идут с одного адреса - ограничение по IP отклонило бы почти все входы
+        properties.put("app.login-throttle.enabled", "false");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        return properties;
+    }
+    
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+    
+    /**
+     * Завести пользователей массовой загрузкой и получить токен для каждого
+     */
+    private void seed() throws IOException, InterruptedException {
+        int userCount = Integer.parseInt(option("users", "100"));
+        adminToken = login("admin", "admin");
+        
+        ArrayNode rows = objectMapper.createArrayNode();
+        usernames = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            usernames[i] = "load" + i;
+            rows.addObject()
+                .put("username", usernames[i])
+                .put("password", PASSWORD)
+                .put("email", usernames[i] + "@example.com");
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/users/bulk"))
+            .header("Authorization", "Bearer " + adminToken)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(rows)))
+            .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200 || objectMapper.readTree(response.body()).path("failed").asInt() != 0) {
+            throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+        }
+        
+        tokens = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            tokens[i] = login(usernames[i], PASSWORD);
+        }
+    }
+    
+    private String login(String username, String password) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(loginRequest(username, password), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + username + ": " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).path("token").asText();
+    }
+    
+    private HttpRequest loginRequest(String username, String password) {
+        ObjectNode body = objectMapper.createObjectNode()
+            .put("username", username)
+            .put("password", password);
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(30))
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+    }
+    
+    private HttpRequest getRequest(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Authorization", "Bearer " + token)
+            .timeout(Duration.ofSeconds(30))
+            .GET()
+            .build();
+    }
+    
+    /**
+     * Подача запросов по расписанию: прогрев, затем измерение
+     */
+    private void run(ExecutorService executor) throws InterruptedException {
+        endpoints.add(new Endpoint("login", () -> {
+            int user = ThreadLocalRandom.current().nextInt(usernames.length);
+            return loginRequest(usernames[user], PASSWORD);
+        }));
+        endpoints.add(new Endpoint("me", () -> getRequest("/api/user/me", randomToken())));
+        endpoints.add(new Endpoint("list", () -> getRequest("/api/user/list?size=50", randomToken())));
+        endpoints.add(new Endpoint("active", () -> getRequest("/api/user/active?size=100", adminToken)));
+        
+        // Доли эндпоинтов в смеси запросов
+        Map<String, Integer> weights = new HashMap<>();
+        for (String entry : option("mix", "login:2,me:60,list:25,active:13").split(",")) {
+            String[] parts = entry.split(":");
+            weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        int[] cumulative = new int[endpoints.size()];
+        int total = 0;
+        for (int i = 0; i < endpoints.size(); i++) {
+            total += weights.getOrDefault(endpoints.get(i).name, 0);
+            cumulative[i] = total;
+        }
+        
+        double rate = Double.parseDouble(option("rate", "50"));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup", "10")));
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration", "30")));
+        int maxInFlight = Integer.parseInt(option("max-in-flight", "10000"));
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        
+        System.out.printf("Load: %.0f req/s, warmup %d s, measurement %d s, %d users%n",
+            rate, TimeUnit.NANOSECONDS.toSeconds(warmup), TimeUnit.NANOSECONDS.toSeconds(duration), usernames.length);
+        
+        AtomicInteger inFlight = new AtomicInteger();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        for (long n = 0; ; n++) {
+            long scheduled = start + n * interval;
+            if (scheduled >= end) {
+                break;
+            }
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            int index = 0;
+            while (cumulative[index] <= pick) {
+                index++;
+            }
+            Endpoint endpoint = endpoints.get(index);
+            boolean measured = scheduled >= measureFrom;
+            
+            // Сервер не успевает: запрос не отправляется, но учитывается
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                if (measured) {
+                    dropped.incrementAndGet();
+                }
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    endpoint.call(client, scheduled, measured);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        
+        // Дождаться ответов на уже отправленные запросы
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+    
+    private String randomToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+    
+    /**
+     * Вывести таблицу задержек, сохранить распределения и проверить пороги
+     */
+    private boolean report(PrintStream out) throws IOException {
+        long duration = Long.parseLong(option("duration", "30"));
+        Path directory = Path.of("target", "load");
+        Files.createDirectories(directory);
+        
+        out.printf("%n%-8s %9s %8s %9s %10s %10s %10s %10s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long requests = 0;
+        long errors = 0;
+        for (Endpoint endpoint : endpoints) {
+            Histogram histogram = endpoint.latencies;
+            requests += endpoint.requests.get();
+            errors += endpoint.errors.get();
+            out.printf("%-8s %9d %8d %9.1f %10.2f %10.2f %10.2f %10.2f%n",
+                endpoint.name, endpoint.requests.get(), endpoint.errors.get(),
+                (double) endpoint.requests.get() / duration,
+                millis(histogram.getValueAtPercentile(PERCENTILES.get("p50"))),
+                millis(histogram.getValueAtPercentile(PERCENTILES.get("p99"))),
+                millis(histogram.getValueAtPercentile(PERCENTILES.get("p999"))),
+                millis(histogram.getMaxValue()));
+            try (PrintStream file = new PrintStream(Files.newOutputStream(directory.resolve(endpoint.name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(file, 1000.0);
+            }
+        }
+        out.printf("total    %9d %8d %9.1f  dropped %d%n", requests, errors, (double) requests / duration, dropped.get());
+        
+        return checkThresholds(out, requests, errors);
+    }
+    
+    /**
+     * Пороги: <endpoint>.p50/.p99/.p999 - максимальная задержка (мс),
+     * error-rate - максимальная доля ошибок и отброшенных запросов
+     */
+    private boolean checkThresholds(PrintStream out, long requests, long errors) throws IOException {
+        Properties thresholds = new Properties();
+        String file = options.get("thresholds");
+        try (InputStream in = file != null
+                ? Files.newInputStream(Path.of(file))
+                : LoadTest.class.getResourceAsStream("/load-thresholds.properties")) {
+            if (in == null) {
+                out.println("No thresholds configured");
+                return true;
+            }
+            thresholds.load(in);
+        }
+        
+        List<String> violations = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            for (Map.Entry<String, Double> percentile : PERCENTILES.entrySet()) {
+                String limit = thresholds.getProperty(endpoint.name + "." + percentile.getKey());
+                if (limit == null) {
+                    continue;
+                }
+                double value = millis(endpoint.latencies.getValueAtPercentile(percentile.getValue()));
+                if (value > Double.parseDouble(limit)) {
+                    violations.add(String.format("%s %s %.2f ms > %s ms", endpoint.name, percentile.getKey(), value, limit));
+                }
+            }
+        }
+        String errorLimit = thresholds.getProperty("error-rate");
+        long attempted = requests + dropped.get();
+        double errorRate = attempted == 0 ? 0 : (double) (errors + dropped.get()) / attempted;
+        if (errorLimit != null && errorRate > Double.parseDouble(errorLimit)) {
+            violations.add(String.format("error rate %.4f > %s", errorRate, errorLimit));
+        }
+        
+        if (violations.isEmpty()) {
+            out.println("Thresholds: OK");
+            return true;
+        }
+        out.println("Thresholds violated:");
+        violations.forEach(violation -> out.println("  " + violation));
+        return false;
+    }
+    
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+    
+    /**
+     * Эндпоинт в смеси запросов: построение запроса и статистика
+     */
+    private static final class Endpoint {
+        
+        private final String name;
+        private final RequestFactory factory;
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        
+        private Endpoint(String name, RequestFactory factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+        
+        private void call(HttpClient client, long scheduled, boolean measured) {
+            boolean success;
+            try {
+                HttpResponse<Void> response = client.send(factory.create(), HttpResponse.BodyHandlers.discarding());
+                success = response.statusCode() == 200;
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!measured) {
+                return;
+            }
+            requests.incrementAndGet();
+            if (success) {
+                long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+                latencies.recordValue(Math.min(latency, MAX_LATENCY_MICROS));
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create();
+    }
+}
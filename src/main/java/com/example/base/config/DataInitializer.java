@@ -2,8 +2,8 @@ package com.example.base.config;
 
 import com.example.base.model.Role;
 import com.example.base.model.User;
-import com.example.base.repository.RoleRepository;
 import com.example.base.repository.UserRepository;
+import com.example.base.service.RoleRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -21,7 +21,7 @@ public class DataInitializer implements ApplicationRunner {
     private UserRepository userRepository;
     
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
     
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -29,20 +29,9 @@ public class DataInitializer implements ApplicationRunner {
     @Override
     @Transactional
     public void run(ApplicationArguments args) throws Exception {
-        // Создаем роли, если их еще нет
-        roleRepository.findByName(Role.RoleType.USER)
-            .orElseGet(() -> {
-                Role role = new Role();
-                role.setName(Role.RoleType.USER);
-                return roleRepository.save(role);
-            });
-        
-        Role adminRole = roleRepository.findByName(Role.RoleType.ADMIN)
-            .orElseGet(() -> {
-                Role role = new Role();
-                role.setName(Role.RoleType.ADMIN);
-                return roleRepository.save(role);
-            });
+        // Создаем роли, если их еще нет, и загружаем справочник ролей
+        roleRegistry.initialize();
+        Role adminRole = roleRegistry.get(Role.RoleType.ADMIN);
         
         // Создаем пользователя admin, если его еще нет
         if (!userRepository.existsByUsername("admin")) {
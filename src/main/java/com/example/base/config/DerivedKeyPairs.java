@@ -0,0 +1,81 @@
+package com.example.base.config;
+
+import org.bouncycastle.asn1.x9.ECNamedCurveTable;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.params.Ed25519PrivateKeyParameters;
+import org.bouncycastle.crypto.util.SubjectPublicKeyInfoFactory;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EdECPrivateKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Пары ключей из заданного секретного материала без KeyPairGenerator.
+ *
+ * Закрытый ключ берется из переданных байтов явно, открытый вычисляет BouncyCastle
+ * (умножение базовой точки за постоянное время). Результат не зависит от того, как
+ * провайдер JDK читает SecureRandom, поэтому узлы на разных сборках JDK получают
+ * одинаковые ключи. Сами ключи - стандартные объекты JDK.
+ */
+final class DerivedKeyPairs {
+    
+    private DerivedKeyPairs() {
+    }
+    
+    /**
+     * Ed25519: 32 байта seed - закрытый ключ в смысле RFC 8032
+     */
+    static KeyPair ed25519(byte[] seed) throws GeneralSecurityException {
+        if (seed.length != 32) {
+            throw new IllegalArgumentException("Ed25519 seed must be 32 bytes");
+        }
+        Ed25519PrivateKeyParameters privateKey = new Ed25519PrivateKeyParameters(seed, 0);
+        byte[] publicKey;
+        try {
+            publicKey = SubjectPublicKeyInfoFactory.createSubjectPublicKeyInfo(privateKey.generatePublicKey()).getEncoded();
+        } catch (IOException e) {
+            throw new GeneralSecurityException("Cannot encode Ed25519 public key", e);
+        }
+        
+        KeyFactory factory = KeyFactory.getInstance("Ed25519");
+        return new KeyPair(
+            factory.generatePublic(new X509EncodedKeySpec(publicKey)),
+            factory.generatePrivate(new EdECPrivateKeySpec(NamedParameterSpec.ED25519, seed.clone())));
+    }
+    
+    /**
+     * ECDSA на именованной кривой (например, secp256r1): закрытый ключ d = material mod (n - 1) + 1.
+     * material должен быть длиннее порядка кривой хотя бы на 64 бита, чтобы смещение было пренебрежимым
+     */
+    static KeyPair ec(byte[] material, String curve) throws GeneralSecurityException {
+        X9ECParameters curveParameters = ECNamedCurveTable.getByName(curve);
+        if (curveParameters == null) {
+            throw new GeneralSecurityException("Unknown curve: " + curve);
+        }
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(curve));
+        ECParameterSpec spec = parameters.getParameterSpec(ECParameterSpec.class);
+        
+        BigInteger n = curveParameters.getN();
+        BigInteger d = new BigInteger(1, material).mod(n.subtract(BigInteger.ONE)).add(BigInteger.ONE);
+        org.bouncycastle.math.ec.ECPoint q = new FixedPointCombMultiplier().multiply(curveParameters.getG(), d).normalize();
+        
+        KeyFactory factory = KeyFactory.getInstance("EC");
+        return new KeyPair(
+            factory.generatePublic(new ECPublicKeySpec(
+                new ECPoint(q.getAffineXCoord().toBigInteger(), q.getAffineYCoord().toBigInteger()), spec)),
+            factory.generatePrivate(new ECPrivateKeySpec(d, spec)));
+    }
+}
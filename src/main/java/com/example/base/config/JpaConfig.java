@@ -0,0 +1,31 @@
+package com.example.base.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Настройки Hibernate для пакетной записи.
+ *
+ * Вставки и изменения сортируются по сущностям и отправляются пакетами JDBC
+ * (id выдаются последовательностями блоками, поэтому вставку не нужно выполнять
+ * сразу ради получения id). Значения по умолчанию можно переопределить через
+ * spring.jpa.properties.hibernate.*
+ */
+@Configuration
+public class JpaConfig {
+    
+    @Bean
+    public HibernatePropertiesCustomizer batchingHibernatePropertiesCustomizer() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, "true");
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, "true");
+            properties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, "true");
+            // Не переопределяется: массовая загрузка пользователей выделяет id из той же
+            // последовательности и рассчитывает на блок [value, value + шаг)
+            properties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo");
+        };
+    }
+}
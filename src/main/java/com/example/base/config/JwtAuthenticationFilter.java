@@ -1,21 +1,39 @@
 package com.example.base.config;
 
+import com.example.base.service.TokenRevocationStore;
+import com.example.base.service.TokenVersionRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Аутентификация по JWT. Время каждого этапа пишется в таймер http.auth.filter
+ * (тег stage: parse, principal, user-load, validate, presence) и, если включен
+ * заголовок Server-Timing, в разбивку текущего запроса.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
@@ -28,6 +46,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private com.example.base.service.ActiveUserService activeUserService;
     
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Строить principal из claims токена вместо загрузки пользователя из БД
+    @Value("${jwt.stateless.enabled:true}")
+    private boolean stateless;
+    
+    private Timer parseTimer;
+    private Timer principalTimer;
+    private Timer userLoadTimer;
+    private Timer validateTimer;
+    private Timer presenceTimer;
+    
+    @PostConstruct
+    public void init() {
+        parseTimer = stageTimer("parse");
+        principalTimer = stageTimer("principal");
+        userLoadTimer = stageTimer("user-load");
+        validateTimer = stageTimer("validate");
+        presenceTimer = stageTimer("presence");
+    }
+    
+    private Timer stageTimer(String stage) {
+        return Timer.builder("http.auth.filter")
+            .tag("stage", stage)
+            .register(meterRegistry);
+    }
+    
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, 
                                     @NonNull HttpServletResponse response, 
@@ -35,21 +87,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         
         final String authorizationHeader = request.getHeader("Authorization");
+        final ServerTiming timing = ServerTiming.of(request);
         
         String username = null;
         String jwt = null;
+        Claims claims = null;
         
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
+            long started = System.nanoTime();
+            try {
+                claims = jwtUtil.extractAllClaims(jwt);
+                // Отозванный при выходе токен - запрос как анонимный
+                if (!tokenRevocationStore.isRevoked(claims)) {
+                    username = claims.getSubject();
+                }
+            } catch (JwtException | IllegalArgumentException e) {
+                // Недействительный токен - запрос продолжается как анонимный
+            }
+            record(parseTimer, timing, "jwt", started);
         }
         
         if (username != null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = loadPrincipal(username, claims, timing);
             
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            long started = System.nanoTime();
+            boolean valid = userDetails != null && jwtUtil.validateToken(jwt, userDetails);
+            record(validateTimer, timing, "validate", started);
+            
+            if (valid) {
                 // Отметить пользователя как активного при каждом запросе
-                activeUserService.markUserActive(username);
+                started = System.nanoTime();
+                Number userId = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+                if (userId != null) {
+                    activeUserService.markUserActive(userId.longValue());
+                } else {
+                    activeUserService.markUserActive(username);
+                }
+                record(presenceTimer, timing, "presence", started);
                 
                 if (SecurityContextHolder.getContext().getAuthentication() == null) {
                     UsernamePasswordAuthenticationToken authToken = 
@@ -60,7 +135,51 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
             }
         }
+        if (timing != null) {
+            timing.authenticated();
+        }
         chain.doFilter(request, response);
     }
+    
+    private void record(Timer timer, ServerTiming timing, String name, long started) {
+        long elapsed = System.nanoTime() - started;
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (timing != null) {
+            timing.add(name, elapsed);
+        }
+    }
+    
+    /**
+     * Построить principal из claims токена; токены без ролей и версии
+     * (выпущенные ранее) проверяются загрузкой пользователя из БД
+     */
+    private UserDetails loadPrincipal(String username, Claims claims, ServerTiming timing) {
+        long started = System.nanoTime();
+        Number userId = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        Number tokenVersion = claims.get(JwtUtil.CLAIM_TOKEN_VERSION, Number.class);
+        List<?> roles = claims.get(JwtUtil.CLAIM_ROLES, List.class);
+        
+        if (!stateless || userId == null || tokenVersion == null || roles == null) {
+            try {
+                return this.userDetailsService.loadUserByUsername(username);
+            } catch (UsernameNotFoundException e) {
+                // Пользователь удален: запрос не аутентифицируется, как и с устаревшей версией токенов
+                return null;
+            } finally {
+                record(userLoadTimer, timing, "user-load", started);
+            }
+        }
+        
+        UserDetails principal = null;
+        if (tokenVersionRegistry.isCurrent(username, userId.longValue(), tokenVersion.longValue())) {
+            principal = User.withUsername(username)
+                .password("")
+                .authorities(roles.stream()
+                    .map(role -> new SimpleGrantedAuthority(role.toString()))
+                    .toList())
+                .build();
+        }
+        record(principalTimer, timing, "principal", started);
+        return principal;
+    }
 }
-
@@ -0,0 +1,218 @@
+package com.example.base.config;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Набор ключей подписи JWT, идентифицируемых по kid.
+ *
+ * Ключи выводятся детерминированно из jwt.secret и номера периода ротации, поэтому
+ * все экземпляры приложения получают одинаковый набор без обмена ключами. Ключ
+ * следующего периода публикуется заранее, ключи прошлых периодов остаются
+ * действительными, пока не истекут подписанные ими токены.
+ *
+ * Пары EdDSA/ES256 строятся из выведенных байтов явно (DerivedKeyPairs), а не через
+ * KeyPairGenerator: иначе ключи зависели бы от того, как провайдер читает SecureRandom.
+ */
+@Component
+public class JwtKeyRing {
+    
+    @Value("${jwt.secret}")
+    private String secret;
+    
+    @Value("${jwt.expiration}")
+    private Long expiration;
+    
+    // HS256, EdDSA (Ed25519) или ES256
+    @Value("${jwt.signing.algorithm:HS256}")
+    private String algorithm;
+    
+    @Value("${jwt.signing.rotation-interval:86400000}")
+    private long rotationInterval;
+    
+    // Токены без kid (выпущенные до появления набора ключей) принимаются до этой даты
+    // (ISO, UTC) и проверяются прежним ключом HMAC из jwt.secret; пусто - не принимаются
+    @Value("${jwt.signing.legacy-until:}")
+    private String legacyUntil;
+    
+    private SecretKey legacyKey;
+    
+    private long legacyDeadline;
+    
+    private JwtParser parser;
+    
+    private volatile KeySet keySet;
+    
+    public record SigningKey(String kid, Key signingKey, Key verificationKey) {
+    }
+    
+    private record KeySet(long period, SigningKey active, Map<String, SigningKey> keys, Map<String, Object> jwks) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (!legacyUntil.isBlank()) {
+            legacyKey = Keys.hmacShaKeyFor(secret.getBytes());
+            legacyDeadline = LocalDate.parse(legacyUntil.trim()).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        parser = Jwts.parser()
+            .keyLocator(new LocatorAdapter<Key>() {
+                @Override
+                protected Key locate(ProtectedHeader header) {
+                    return verificationKey(header.getKeyId());
+                }
+            })
+            .build();
+        rotate();
+    }
+    
+    /**
+     * Перестроить набор ключей при смене периода ротации
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.rotation-check-interval:60000}")
+    public void rotate() {
+        long period = System.currentTimeMillis() / rotationInterval;
+        KeySet current = keySet;
+        if (current != null && current.period() == period) {
+            return;
+        }
+        
+        // Прошлые периоды храним, пока могут быть живы подписанные ими токены
+        long retained = (expiration + rotationInterval - 1) / rotationInterval;
+        Map<String, SigningKey> keys = new LinkedHashMap<>();
+        for (long p = period + 1; p >= period - retained; p--) {
+            SigningKey key = deriveKey(p);
+            keys.put(key.kid(), key);
+        }
+        
+        SigningKey active = keys.get(kid(period));
+        keySet = new KeySet(period, active, Map.copyOf(keys), buildJwks(keys.values()));
+    }
+    
+    /**
+     * Текущий ключ подписи
+     */
+    public SigningKey activeKey() {
+        return keySet.active();
+    }
+    
+    /**
+     * Общий неизменяемый парсер; ключ проверки выбирается по kid из заголовка
+     */
+    public JwtParser parser() {
+        return parser;
+    }
+    
+    /**
+     * Публичные ключи в формате JWKS (пусто для HMAC)
+     */
+    public Map<String, Object> jwks() {
+        return keySet.jwks();
+    }
+    
+    private Key verificationKey(String kid) {
+        if (kid == null) {
+            if (legacyKey == null || System.currentTimeMillis() >= legacyDeadline) {
+                throw new JwtException("Token without kid is not accepted");
+            }
+            return legacyKey;
+        }
+        SigningKey key = keySet.keys().get(kid);
+        if (key == null) {
+            throw new JwtException("Unknown signing key: " + kid);
+        }
+        return key.verificationKey();
+    }
+    
+    private String kid(long period) {
+        return algorithm.toLowerCase() + "-" + period;
+    }
+    
+    private SigningKey deriveKey(long period) {
+        byte[] seed = hmac(secret.getBytes(StandardCharsets.UTF_8),
+            (algorithm + ":" + period).getBytes(StandardCharsets.UTF_8));
+        String kid = kid(period);
+        
+        try {
+            switch (algorithm) {
+                case "HS256": {
+                    SecretKey key = new SecretKeySpec(seed, "HmacSHA256");
+                    return new SigningKey(kid, key, key);
+                }
+                case "EdDSA": {
+                    KeyPair pair = DerivedKeyPairs.ed25519(expand(seed, 32));
+                    return new SigningKey(kid, pair.getPrivate(), pair.getPublic());
+                }
+                case "ES256": {
+                    // 384 бита на 256-битный порядок кривой: смещение при приведении по модулю пренебрежимо
+                    KeyPair pair = DerivedKeyPairs.ec(expand(seed, 48), "secp256r1");
+                    return new SigningKey(kid, pair.getPrivate(), pair.getPublic());
+                }
+                default:
+                    throw new IllegalStateException("Unsupported jwt.signing.algorithm: " + algorithm);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot derive signing key " + kid, e);
+        }
+    }
+    
+    private static Map<String, Object> buildJwks(Iterable<SigningKey> keys) {
+        List<Map<String, ?>> published = new ArrayList<>();
+        for (SigningKey key : keys) {
+            if (key.verificationKey() instanceof PublicKey publicKey) {
+                published.add(new LinkedHashMap<>(Jwks.builder().key(publicKey).id(key.kid()).build()));
+            }
+        }
+        return Map.of("keys", List.copyOf(published));
+    }
+    
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+    
+    /**
+     * Ключевой материал нужной длины из seed: HMAC-SHA256(seed, счетчик) в режиме счетчика
+     */
+    private static byte[] expand(byte[] seed, int length) {
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (long counter = 0; offset < length; counter++) {
+            byte[] block = hmac(seed, ByteBuffer.allocate(Long.BYTES).putLong(counter).array());
+            int n = Math.min(block.length, length - offset);
+            System.arraycopy(block, 0, result, offset, n);
+            offset += n;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.base.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Кэш проверенных JWT: ключ - SHA-256 от токена, значение - разобранные claims.
+ * Подпись токена проверяется один раз, последующие запросы обходятся поиском в кэше.
+ * Запись удаляется из кэша в момент истечения срока действия токена.
+ */
+@Component
+public class JwtTokenCache {
+    
+    @Value("${jwt.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${jwt.cache.max-size:10000}")
+    private long maxSize;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Cache<String, Claims> cache;
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfter(new Expiry<String, Claims>() {
+                @Override
+                public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                    return timeToExpiration(claims);
+                }
+                
+                @Override
+                public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                    return timeToExpiration(claims);
+                }
+                
+                @Override
+                public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.claims");
+    }
+    
+    /**
+     * Получить claims токена из кэша, при промахе - разобрать и проверить токен
+     */
+    public Claims get(String token, Function<String, Claims> parser) {
+        if (cache == null) {
+            return parser.apply(token);
+        }
+        return cache.get(digest(token), key -> parser.apply(token));
+    }
+    
+    /**
+     * Удалить токен из кэша
+     */
+    public void invalidate(String token) {
+        if (cache != null) {
+            cache.invalidate(digest(token));
+        }
+    }
+    
+    private static long timeToExpiration(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return 0;
+        }
+        long millis = expiration.getTime() - System.currentTimeMillis();
+        return Math.max(0, millis) * 1_000_000L;
+    }
+    
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,29 +2,34 @@ package com.example.base.config;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
     
-    @Value("${jwt.secret}")
-    private String secret;
+    // Claims для построения principal без обращения к БД
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    public static final String CLAIM_ROLES = "roles";
     
     @Value("${jwt.expiration}")
     private Long expiration;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
-    }
+    @Autowired
+    private JwtTokenCache tokenCache;
+    
+    @Autowired
+    private JwtKeyRing keyRing;
     
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -39,10 +44,12 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+    public Claims extractAllClaims(String token) {
+        return tokenCache.get(token, this::parseClaims);
+    }
+    
+    private Claims parseClaims(String token) {
+        return keyRing.parser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -57,13 +64,28 @@ public class JwtUtil {
         return createToken(claims, userDetails.getUsername());
     }
     
+    public String generateToken(UserDetails userDetails, boolean isAdmin, Long userId, long tokenVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("isAdmin", isAdmin);
+        claims.put(CLAIM_USER_ID, userId);
+        claims.put(CLAIM_TOKEN_VERSION, tokenVersion);
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        return createToken(claims, userDetails.getUsername());
+    }
+    
     private String createToken(Map<String, Object> claims, String subject) {
+        JwtKeyRing.SigningKey key = keyRing.activeKey();
         return Jwts.builder()
+                .header().keyId(key.kid()).and()
                 .claims(claims)
+                // jti - идентификатор для отзыва отдельного токена (TokenRevocationStore)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(key.signingKey())
                 .compact();
     }
     
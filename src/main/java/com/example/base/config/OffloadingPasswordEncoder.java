@@ -0,0 +1,111 @@
+package com.example.base.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Хэширование и проверка паролей на отдельном пуле потоков по числу ядер.
+ *
+ * BCrypt намеренно дорогой, и всплеск входов мог занять им все потоки Tomcat, из-за
+ * чего дешевые запросы вставали в очередь. Теперь одновременно считается не больше
+ * хэшей, чем ядер, а ожидающие ограничены очередью: если она заполнена, запрос сразу
+ * отклоняется PasswordHashingRejectedException (ответ 503 с Retry-After).
+ *
+ * Метрики: password.hashing (время вычисления, тег operation), password.hashing.wait
+ * (ожидание в очереди), password.hashing.queue и password.hashing.active (текущая
+ * загрузка), password.hashing.rejected (отклоненные запросы).
+ */
+public class OffloadingPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer waitTimer;
+    private final Counter rejected;
+    
+    public OffloadingPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+        
+        this.encodeTimer = latencyTimer("password.hashing", meterRegistry, "encode");
+        this.matchesTimer = latencyTimer("password.hashing", meterRegistry, "matches");
+        this.waitTimer = Timer.builder("password.hashing.wait")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.rejected = meterRegistry.counter("password.hashing.rejected");
+        Gauge.builder("password.hashing.queue", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+    
+    private static Timer latencyTimer(String name, MeterRegistry meterRegistry, String operation) {
+        return Timer.builder(name)
+            .tag("operation", operation)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+    
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Разбор префикса хэша, вычислений нет
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+    
+    /**
+     * Кодировщик без пула: для вызывающих, которые сами ограничивают параллельность
+     * (например, массовая загрузка пользователей со своим пулом)
+     */
+    public PasswordEncoder getDelegate() {
+        return delegate;
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+    
+    private <T> T submit(Timer timer, Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException();
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Password hashing interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+}
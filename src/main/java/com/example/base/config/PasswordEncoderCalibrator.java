@@ -0,0 +1,97 @@
+package com.example.base.config;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Подбор стоимости хэширования паролей под целевое время одного хэша (медиана)
+ * на текущем железе. Выбирается самая высокая стоимость, укладывающаяся в цель,
+ * но не ниже заданного минимума.
+ *
+ * Используется при старте (app.password.calibration.enabled=true) или отдельно:
+ * java -cp base-1.0.0.jar -Dloader.main=com.example.base.config.PasswordEncoderCalibrator \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher [target-ms]
+ * печатает рекомендуемые значения app.password.* для всех алгоритмов.
+ */
+public final class PasswordEncoderCalibrator {
+    
+    // Память Argon2 по умолчанию (КиБ), рекомендация OWASP
+    public static final int ARGON2_DEFAULT_MEMORY = 19456;
+    
+    // Замеров на одно значение стоимости
+    private static final int SAMPLES = 5;
+    
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    
+    private PasswordEncoderCalibrator() {
+    }
+    
+    /**
+     * Стоимость BCrypt (log2 числа раундов): каждый шаг удваивает время
+     */
+    public static int bcryptStrength(long targetMs, int minStrength) {
+        int strength = minStrength;
+        while (strength < 31 && medianMillis(new BCryptPasswordEncoder(strength + 1)) <= targetMs) {
+            strength++;
+        }
+        return strength;
+    }
+    
+    /**
+     * Число итераций PBKDF2-HMAC-SHA256: время растет линейно
+     */
+    public static int pbkdf2Iterations(long targetMs, int minIterations) {
+        return scaleIterations(targetMs, minIterations, PasswordEncoderCalibrator::pbkdf2);
+    }
+    
+    /**
+     * Число проходов Argon2id при заданном объеме памяти (КиБ)
+     */
+    public static int argon2Iterations(long targetMs, int memory, int minIterations) {
+        return scaleIterations(targetMs, minIterations, iterations -> argon2(memory, iterations));
+    }
+    
+    public static PasswordEncoder pbkdf2(int iterations) {
+        return new Pbkdf2PasswordEncoder("", 16, iterations, Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+    }
+    
+    public static PasswordEncoder argon2(int memory, int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, memory, iterations);
+    }
+    
+    private static int scaleIterations(long targetMs, int minIterations, IntFunction<PasswordEncoder> factory) {
+        double millis = Math.max(medianMillis(factory.apply(minIterations)), 0.001);
+        // Линейная оценка с проверкой: при превышении цели шаг назад на 10%
+        int iterations = Math.max(minIterations, (int) Math.min(Integer.MAX_VALUE, minIterations * (targetMs / millis)));
+        while (iterations > minIterations && medianMillis(factory.apply(iterations)) > targetMs) {
+            iterations = Math.max(minIterations, iterations * 9 / 10);
+        }
+        return iterations;
+    }
+    
+    private static double medianMillis(PasswordEncoder encoder) {
+        // Первый вызов прогревает код и не учитывается
+        encoder.encode(SAMPLE_PASSWORD);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+    
+    public static void main(String[] args) {
+        long targetMs = args.length > 0 ? Long.parseLong(args[0]) : 100;
+        System.out.println("# Целевое время хэша: " + targetMs + " мс");
+        System.out.println("app.password.bcrypt.strength=" + bcryptStrength(targetMs, 4));
+        System.out.println("app.password.pbkdf2.iterations=" + pbkdf2Iterations(targetMs, 10000));
+        System.out.println("app.password.argon2.iterations=" + argon2Iterations(targetMs, ARGON2_DEFAULT_MEMORY, 1));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.base.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Набор кодировщиков паролей с префиксом алгоритма в хэше.
+ *
+ * BCrypt и Argon2 хранят стоимость в самом хэше. Pbkdf2PasswordEncoder хранит только
+ * соль и хэш, поэтому число итераций входит в id: {pbkdf2-310000}. Хэш с любым прежним
+ * числом итераций проверяется своим кодировщиком, а DelegatingPasswordEncoder считает
+ * его устаревшим (id отличается от текущего) и пересчитывает при входе.
+ */
+final class PasswordEncoders {
+    
+    static final String PBKDF2_PREFIX = "pbkdf2-";
+    
+    // Верхняя граница числа итераций из id: хэш из БД не должен занять поток на минуты
+    private static final int PBKDF2_MAX_ITERATIONS = 10_000_000;
+    
+    private PasswordEncoders() {
+    }
+    
+    /**
+     * DelegatingPasswordEncoder: новые хэши - алгоритмом algorithm (bcrypt, argon2, pbkdf2).
+     * pbkdf2LegacyIterations - число итераций хэшей с префиксом {pbkdf2} без стоимости
+     */
+    static DelegatingPasswordEncoder delegating(String algorithm, int bcryptStrength, int pbkdf2Iterations,
+                                                int pbkdf2LegacyIterations, int argon2Memory, int argon2Iterations) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        String pbkdf2Id = PBKDF2_PREFIX + pbkdf2Iterations;
+        
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put(pbkdf2Id, PasswordEncoderCalibrator.pbkdf2(pbkdf2Iterations));
+        encoders.put("pbkdf2", PasswordEncoderCalibrator.pbkdf2(pbkdf2LegacyIterations));
+        encoders.put("argon2", PasswordEncoderCalibrator.argon2(argon2Memory, argon2Iterations));
+        
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("pbkdf2".equals(algorithm) ? pbkdf2Id : algorithm, encoders);
+        // Id вне таблицы: {pbkdf2-N} с прежним числом итераций; хэши без префикса записаны прежним BCryptPasswordEncoder
+        encoder.setDefaultPasswordEncoderForMatches(new Pbkdf2AnyCost(bcrypt));
+        return encoder;
+    }
+    
+    /**
+     * Проверка хэшей {pbkdf2-N} с произвольным N; остальное проверяет fallback
+     */
+    private static final class Pbkdf2AnyCost implements PasswordEncoder {
+        
+        private final PasswordEncoder fallback;
+        private final Map<Integer, PasswordEncoder> byIterations = new ConcurrentHashMap<>();
+        
+        private Pbkdf2AnyCost(PasswordEncoder fallback) {
+            this.fallback = fallback;
+        }
+        
+        @Override
+        public String encode(CharSequence rawPassword) {
+            throw new UnsupportedOperationException("Only used to match existing hashes");
+        }
+        
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            if (encodedPassword == null || !encodedPassword.startsWith("{" + PBKDF2_PREFIX)) {
+                return fallback.matches(rawPassword, encodedPassword);
+            }
+            int end = encodedPassword.indexOf('}');
+            int iterations;
+            try {
+                iterations = Integer.parseInt(encodedPassword.substring(PBKDF2_PREFIX.length() + 1, end));
+            } catch (RuntimeException e) {
+                return false;
+            }
+            if (iterations < 1 || iterations > PBKDF2_MAX_ITERATIONS) {
+                return false;
+            }
+            return byIterations.computeIfAbsent(iterations, PasswordEncoderCalibrator::pbkdf2)
+                .matches(rawPassword, encodedPassword.substring(end + 1));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.base.config;
+
+/**
+ * Очередь хэширования паролей заполнена: запрос нужно повторить позже (ответ 503)
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+    
+    public PasswordHashingRejectedException() {
+        super("Server is busy, please retry later");
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.base.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -10,10 +16,11 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -27,15 +34,86 @@ import java.util.List;
 @EnableMethodSecurity
 public class SecurityConfig {
     
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+    
     @Autowired
     private UserDetailsService userDetailsService;
     
+    @Autowired
+    private UserDetailsPasswordService userDetailsPasswordService;
+    
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Потоки хэширования паролей (0 - по числу процессоров) и длина очереди ожидающих
+    @Value("${app.password-hashing.threads:0}")
+    private int passwordHashingThreads;
+    
+    @Value("${app.password-hashing.queue-size:100}")
+    private int passwordHashingQueueSize;
+    
+    // Алгоритм новых хэшей: bcrypt, argon2 или pbkdf2
+    @Value("${app.password.encoder:bcrypt}")
+    private String passwordEncoderId;
+    
+    @Value("${app.password.bcrypt.strength:10}")
+    private int bcryptStrength;
+    
+    @Value("${app.password.pbkdf2.iterations:310000}")
+    private int pbkdf2Iterations;
+    
+    // Итерации хэшей с префиксом {pbkdf2} без числа итераций (записаны до появления {pbkdf2-N})
+    @Value("${app.password.pbkdf2.legacy-iterations:310000}")
+    private int pbkdf2LegacyIterations;
+    
+    @Value("${app.password.argon2.memory:" + PasswordEncoderCalibrator.ARGON2_DEFAULT_MEMORY + "}")
+    private int argon2Memory;
+    
+    @Value("${app.password.argon2.iterations:2}")
+    private int argon2Iterations;
+    
+    // Подбор стоимости bcrypt или argon2 при старте; заданное значение - нижняя граница.
+    // PBKDF2 не подбирается: стоимость меняется только явно через app.password.pbkdf2.iterations
+    @Value("${app.password.calibration.enabled:false}")
+    private boolean passwordCalibration;
+    
+    @Value("${app.password.calibration.target-ms:100}")
+    private long passwordCalibrationTargetMs;
+    
+    // /actuator/prometheus без токена (сбор метрик из внутренней сети); остальные эндпоинты actuator - для ADMIN
+    @Value("${app.metrics.prometheus-public:false}")
+    private boolean prometheusPublic;
+    
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // Хэши считаются на отдельном пуле, а не на потоках Tomcat
+        int threads = passwordHashingThreads > 0 ? passwordHashingThreads : Runtime.getRuntime().availableProcessors();
+        return new OffloadingPasswordEncoder(delegatingPasswordEncoder(), threads, passwordHashingQueueSize, meterRegistry);
+    }
+    
+    /**
+     * Хэш хранится с префиксом алгоритма ({bcrypt}, {argon2}, {pbkdf2-N}, см. PasswordEncoders).
+     * Хэш другого алгоритма или с меньшей стоимостью считается устаревшим и пересчитывается
+     * при входе (UserDetailsServiceImpl.updatePassword)
+     */
+    private PasswordEncoder delegatingPasswordEncoder() {
+        if (passwordCalibration) {
+            switch (passwordEncoderId) {
+                case "bcrypt" -> bcryptStrength =
+                    PasswordEncoderCalibrator.bcryptStrength(passwordCalibrationTargetMs, bcryptStrength);
+                case "argon2" -> argon2Iterations =
+                    PasswordEncoderCalibrator.argon2Iterations(passwordCalibrationTargetMs, argon2Memory, argon2Iterations);
+                default -> log.warn("Calibration is not supported for {}, using configured cost", passwordEncoderId);
+            }
+            log.info("Password hashing cost: bcrypt.strength={}, pbkdf2.iterations={}, argon2.iterations={}",
+                bcryptStrength, pbkdf2Iterations, argon2Iterations);
+        }
+        
+        return PasswordEncoders.delegating(passwordEncoderId, bcryptStrength, pbkdf2Iterations, pbkdf2LegacyIterations,
+            argon2Memory, argon2Iterations);
     }
     
     @Bean
@@ -43,6 +121,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Устаревший хэш пересчитывается после успешного входа
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return authProvider;
     }
     
@@ -56,11 +136,19 @@ public class SecurityConfig {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/auth/**", "/", "/index.html", "/static/**", "/css/**", "/js/**", "/favicon.ico", "/favicon.svg").permitAll()
-                .requestMatchers("/api/admin/**").hasRole("ADMIN")
-                .anyRequest().authenticated()
-            )
+            // 401 без токена или с истекшим токеном: клиент по нему обновляет access token
+            .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .authorizeHttpRequests(auth -> {
+                // Повторные диспетчеризации асинхронных ответов (SSE) уже прошли проверку доступа
+                auth.dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                    .requestMatchers("/api/auth/**", "/", "/index.html", "/static/**", "/css/**", "/js/**", "/favicon.ico", "/favicon.svg").permitAll()
+                    .requestMatchers("/actuator/health/**").permitAll();
+                if (prometheusPublic) {
+                    auth.requestMatchers("/actuator/prometheus").permitAll();
+                }
+                auth.requestMatchers("/api/admin/**", "/actuator/**").hasRole("ADMIN")
+                    .anyRequest().authenticated();
+            })
             .authenticationProvider(authenticationProvider())
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         
@@ -74,7 +162,7 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Total-Count", "X-Next-Cursor", "X-Change-Version", "ETag", "Last-Modified", ServerTiming.HEADER));
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
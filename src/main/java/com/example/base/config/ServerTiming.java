@@ -0,0 +1,61 @@
+package com.example.base.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Locale;
+
+/**
+ * Этапы обработки одного запроса для заголовка Server-Timing.
+ * Создается ServerTimingFilter (если заголовок включен) и хранится в атрибуте запроса.
+ */
+public class ServerTiming {
+    
+    public static final String HEADER = "Server-Timing";
+    
+    private static final String ATTRIBUTE = ServerTiming.class.getName();
+    
+    private final long start;
+    private final StringBuilder metrics = new StringBuilder();
+    
+    // Момент выхода из JwtAuthenticationFilter; дальше - авторизация и обработчик
+    private long authenticatedAt;
+    
+    private ServerTiming(long start) {
+        this.start = start;
+        this.authenticatedAt = start;
+    }
+    
+    static ServerTiming start(HttpServletRequest request) {
+        ServerTiming timing = new ServerTiming(System.nanoTime());
+        request.setAttribute(ATTRIBUTE, timing);
+        return timing;
+    }
+    
+    /**
+     * Этапы текущего запроса или null, если заголовок выключен
+     */
+    public static ServerTiming of(HttpServletRequest request) {
+        return (ServerTiming) request.getAttribute(ATTRIBUTE);
+    }
+    
+    public void add(String name, long nanos) {
+        if (!metrics.isEmpty()) {
+            metrics.append(", ");
+        }
+        metrics.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+    
+    public void authenticated() {
+        authenticatedAt = System.nanoTime();
+    }
+    
+    /**
+     * Значение заголовка: записанные этапы, app (от аутентификации до ответа) и total
+     */
+    public String toHeader() {
+        long now = System.nanoTime();
+        add("app", now - authenticatedAt);
+        add("total", now - start);
+        return metrics.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.base.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Начало отсчета для заголовка Server-Timing: первый фильтр в цепочке.
+ * Заголовок записывает ServerTimingAdvice перед телом ответа.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter extends OncePerRequestFilter {
+    
+    // Заголовок раскрывает внутреннюю разбивку времени - по умолчанию выключен
+    @Value("${app.server-timing.enabled:false}")
+    private boolean enabled;
+    
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain chain)
+            throws ServletException, IOException {
+        if (enabled) {
+            ServerTiming.start(request);
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.base.controller;
+
+import com.example.base.dto.BulkImportResponse;
+import com.example.base.service.UserBulkImportService;
+import com.example.base.service.UserExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "http://localhost:8080")
+public class AdminController {
+    
+    @Autowired
+    private UserExportService userExportService;
+    
+    @Autowired
+    private UserBulkImportService userBulkImportService;
+    
+    /**
+     * Выгрузить всех пользователей (format=ndjson или csv) потоком, без сборки списка в памяти
+     */
+    @GetMapping("/users/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "ndjson") String format) {
+        UserExportService.Format exportFormat;
+        try {
+            exportFormat = UserExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format: " + format);
+        }
+        
+        StreamingResponseBody body = outputStream -> userExportService.export(exportFormat, outputStream);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + exportFormat.getExtension() + "\"")
+            .body(body);
+    }
+    
+    /**
+     * Создать пользователей пачкой (JSON-массив или NDJSON из RegisterRequest); в ответе результат по каждой строке
+     */
+    @PostMapping(value = "/users/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkImportResponse> importUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userBulkImportService.importUsers(body));
+    }
+}
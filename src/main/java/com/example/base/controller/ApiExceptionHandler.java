@@ -0,0 +1,49 @@
+package com.example.base.controller;
+
+import com.example.base.config.PasswordHashingRejectedException;
+import com.example.base.service.LoginThrottledException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    
+    // Через сколько секунд клиенту стоит повторить отклоненный запрос
+    @Value("${app.password-hashing.retry-after:1}")
+    private long passwordHashingRetryAfter;
+    
+    /**
+     * Очередь хэширования паролей заполнена: быстрый отказ вместо ожидания
+     */
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", e.getMessage());
+        response.put("status", "error");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingRetryAfter))
+            .body(response);
+    }
+    
+    /**
+     * Превышен лимит попыток входа по имени пользователя или IP
+     */
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<Map<String, String>> handleLoginThrottled(LoginThrottledException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", e.getMessage());
+        response.put("status", "error");
+        // Retry-After в секундах, с округлением вверх
+        long retryAfter = Math.max(1, (e.getRetryAfter() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+            .body(response);
+    }
+}
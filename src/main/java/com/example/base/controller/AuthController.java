@@ -2,15 +2,22 @@ package com.example.base.controller;
 
 import com.example.base.dto.AuthResponse;
 import com.example.base.dto.LoginRequest;
+import com.example.base.dto.RefreshRequest;
 import com.example.base.dto.RegisterRequest;
+import com.example.base.config.JwtKeyRing;
 import com.example.base.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -20,6 +27,9 @@ public class AuthController {
     @Autowired
     private AuthService authService;
     
+    @Autowired
+    private JwtKeyRing keyRing;
+    
     @PostMapping("/register")
     public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
         AuthResponse response = authService.register(request);
@@ -31,8 +41,9 @@ public class AuthController {
     }
     
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        AuthResponse response = authService.login(request);
+    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request, HttpServletRequest httpRequest) {
+        // За прокси адрес клиента берется из X-Forwarded-For (server.forward-headers-strategy)
+        AuthResponse response = authService.login(request, httpRequest.getRemoteAddr());
         if (response.getToken() != null) {
             return ResponseEntity.ok(response);
         } else {
@@ -40,16 +51,39 @@ public class AuthController {
         }
     }
     
+    /**
+     * Новый access token и следующий refresh token; 401, если refresh token недействителен
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshRequest request) {
+        AuthResponse response = authService.refresh(request.getRefreshToken());
+        if (response.getToken() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+    }
+    
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, String>> logout() {
-        authService.logout();
+    public ResponseEntity<Map<String, String>> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshRequest request) {
+        String token = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        authService.logout(token, request != null ? request.getRefreshToken() : null);
         Map<String, String> response = new HashMap<>();
         response.put("message", "Logout successful");
         response.put("status", "success");
         return ResponseEntity.ok(response);
     }
+    
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        // Публичные ключи для локальной проверки токенов другими сервисами
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+            .body(keyRing.jwks());
+    }
 }
 
 
 
-
@@ -1,15 +1,27 @@
 package com.example.base.controller;
 
+import com.example.base.config.PasswordHashingRejectedException;
 import com.example.base.dto.RegisterRequest;
 import com.example.base.dto.UpdateUserRequest;
+import com.example.base.dto.UserChanges;
 import com.example.base.dto.UserInfo;
+import com.example.base.dto.UserPage;
+import com.example.base.service.ActiveUserStreamService;
 import com.example.base.service.AuthService;
+import com.example.base.service.UserChangeLog;
+import com.example.base.service.UserDirectoryVersion;
 import com.example.base.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -26,29 +38,132 @@ public class UserController {
     @Autowired
     private AuthService authService;
     
+    @Autowired
+    private UserDirectoryVersion directoryVersion;
+    
+    @Autowired
+    private UserChangeLog userChangeLog;
+    
     @GetMapping("/me")
-    public ResponseEntity<UserInfo> getCurrentUser() {
+    public ResponseEntity<UserInfo> getCurrentUser(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return ResponseEntity.ok(userService.getCurrentUser());
     }
     
+    // Размер страницы списка пользователей по умолчанию и максимальный
+    @Value("${app.users.page-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${app.users.max-page-size:500}")
+    private int maxPageSize;
+    
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserInfo>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<List<UserInfo>> getAllUsers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email,
+            @RequestParam(defaultValue = "false") boolean count,
+            ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return usersPage(after, size, direction, username, email, count);
     }
     
     @Autowired
     private com.example.base.service.ActiveUserService activeUserService;
     
+    @Autowired
+    private ActiveUserStreamService activeUserStreamService;
+    
     @GetMapping("/list")
-    public ResponseEntity<List<UserInfo>> getUserList() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<List<UserInfo>> getUserList(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email,
+            @RequestParam(defaultValue = "false") boolean count,
+            ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return usersPage(after, size, direction, username, email, count);
     }
     
+    /**
+     * Пользователи, созданные, измененные и удаленные после номера since. Номер для
+     * первого запроса - заголовок X-Change-Version первой страницы /all или /list
+     */
+    @GetMapping("/changes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserChanges> getChanges(@RequestParam long since) {
+        return ResponseEntity.ok(userChangeLog.changesSince(since, maxPageSize));
+    }
+    
+    /**
+     * Условный GET: если справочник пользователей не менялся с версии из If-None-Match,
+     * ответ 304 формируется по одному чтению счетчика изменений, без запроса страницы.
+     * ETag добавляется и к полному ответу
+     */
+    private boolean notModified(ServletWebRequest request) {
+        HttpServletRequest servletRequest = request.getRequest();
+        String variant = servletRequest.getRemoteUser() + " " + servletRequest.getRequestURI() + "?" + servletRequest.getQueryString();
+        return request.checkNotModified(directoryVersion.etag(variant));
+    }
+    
+    /**
+     * Страница пользователей: курсор следующей страницы в X-Next-Cursor,
+     * номер изменений в X-Change-Version (только для первой страницы) и общее
+     * количество в X-Total-Count (для первой страницы с count=true)
+     */
+    private ResponseEntity<List<UserInfo>> usersPage(Long after, Integer size, String direction,
+                                                     String username, String email, boolean count) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        // Номер читается до страницы: изменения, зафиксированные между ними, клиент получит повторно
+        Long changeVersion = after == null ? userChangeLog.currentVersion() : null;
+        UserPage page = userService.getUsersPage(after, pageSize, !"desc".equalsIgnoreCase(direction), username, email, count);
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", String.valueOf(page.getNextCursor()));
+        }
+        if (page.getTotal() != null) {
+            response.header("X-Total-Count", String.valueOf(page.getTotal()));
+        }
+        if (changeVersion != null) {
+            response.header("X-Change-Version", String.valueOf(changeVersion));
+        }
+        return response.body(page.getUsers());
+    }
+    
+    // Максимальный размер страницы списка активных пользователей
+    @Value("${app.active-users.max-page-size:1000}")
+    private int maxActivePageSize;
+    
     @GetMapping("/active")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserInfo>> getActiveUsers() {
-        return ResponseEntity.ok(activeUserService.getActiveUsers());
+    public ResponseEntity<List<UserInfo>> getActiveUsers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(defaultValue = "desc") String direction) {
+        int pageSize = Math.max(1, Math.min(size, maxActivePageSize));
+        Page<UserInfo> users = activeUserService.getActiveUsers(
+            Math.max(0, page), pageSize, !"asc".equalsIgnoreCase(direction));
+        return ResponseEntity.ok()
+            .header("X-Total-Count", String.valueOf(users.getTotalElements()))
+            .body(users.getContent());
+    }
+    
+    @GetMapping(value = "/active/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public SseEmitter streamActiveUsers() {
+        return activeUserStreamService.subscribe();
     }
     
     @PostMapping("/register")
@@ -60,6 +175,9 @@ public class UserController {
             response.put("message", "User registered successfully");
             response.put("status", "success");
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingRejectedException e) {
+            // Ответ 503 формирует ApiExceptionHandler
+            throw e;
         } catch (RuntimeException e) {
             response.put("message", e.getMessage());
             response.put("status", "error");
@@ -75,6 +193,9 @@ public class UserController {
             response.put("message", "User updated successfully");
             response.put("status", "success");
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingRejectedException e) {
+            // Ответ 503 формирует ApiExceptionHandler
+            throw e;
         } catch (RuntimeException e) {
             response.put("message", e.getMessage());
             response.put("status", "error");
@@ -91,6 +212,9 @@ public class UserController {
             response.put("message", "User updated successfully");
             response.put("status", "success");
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingRejectedException e) {
+            // Ответ 503 формирует ApiExceptionHandler
+            throw e;
         } catch (RuntimeException e) {
             response.put("message", e.getMessage());
             response.put("status", "error");
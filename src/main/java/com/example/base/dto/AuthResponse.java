@@ -5,6 +5,8 @@ public class AuthResponse {
     private String username;
     private boolean isAdmin;
     private String message;
+    // Непрозрачный токен для получения нового access token (/api/auth/refresh)
+    private String refreshToken;
     
     public AuthResponse() {
     }
@@ -47,6 +49,14 @@ public class AuthResponse {
     public void setMessage(String message) {
         this.message = message;
     }
+    
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+    
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
 }
 
 
@@ -0,0 +1,45 @@
+package com.example.base.dto;
+
+import java.util.List;
+
+/**
+ * Итог массовой загрузки пользователей: счетчики и результат по каждой строке
+ */
+public class BulkImportResponse {
+    private int created;
+    private int failed;
+    private List<BulkUserResult> results;
+    
+    public BulkImportResponse() {
+    }
+    
+    public BulkImportResponse(int created, int failed, List<BulkUserResult> results) {
+        this.created = created;
+        this.failed = failed;
+        this.results = results;
+    }
+    
+    public int getCreated() {
+        return created;
+    }
+    
+    public void setCreated(int created) {
+        this.created = created;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+    
+    public List<BulkUserResult> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<BulkUserResult> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.base.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Результат создания одного пользователя при массовой загрузке
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUserResult {
+    // Номер строки во входных данных (с нуля)
+    private int index;
+    private String username;
+    // success или error
+    private String status;
+    // id созданного пользователя
+    private Long id;
+    // Причина ошибки
+    private String message;
+    
+    public BulkUserResult() {
+    }
+    
+    public BulkUserResult(int index, String username, String status, Long id, String message) {
+        this.index = index;
+        this.username = username;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+    
+    public static BulkUserResult success(int index, String username, Long id) {
+        return new BulkUserResult(index, username, "success", id, null);
+    }
+    
+    public static BulkUserResult error(int index, String username, String message) {
+        return new BulkUserResult(index, username, "error", null, message);
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public void setUsername(String username) {
+        this.username = username;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.base.dto;
+
+import java.util.List;
+
+/**
+ * Изменения списка пользователей после номера since (/api/user/changes)
+ */
+public class UserChanges {
+    // Номер, с которого запрашивать следующие изменения
+    private long version;
+    // Созданные и измененные пользователи (текущее состояние)
+    private List<UserInfo> users;
+    // id удаленных пользователей
+    private List<Long> deleted;
+    // Изменения не восстановить (слишком старый since или слишком много изменений):
+    // список нужно загрузить заново
+    private boolean reset;
+    
+    public UserChanges() {
+    }
+    
+    public UserChanges(long version, List<UserInfo> users, List<Long> deleted, boolean reset) {
+        this.version = version;
+        this.users = users;
+        this.deleted = deleted;
+        this.reset = reset;
+    }
+    
+    public static UserChanges reset(long version) {
+        return new UserChanges(version, List.of(), List.of(), true);
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    public List<UserInfo> getUsers() {
+        return users;
+    }
+    
+    public void setUsers(List<UserInfo> users) {
+        this.users = users;
+    }
+    
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+    
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+    
+    public boolean isReset() {
+        return reset;
+    }
+    
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.base.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class UserInfo {
@@ -8,6 +9,10 @@ public class UserInfo {
     private String email;
     private boolean isAdmin;
     
+    // Время последней активности (только в списке активных пользователей)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long lastActivity;
+    
     public UserInfo() {
     }
     
@@ -50,6 +55,14 @@ public class UserInfo {
     public void setAdmin(boolean admin) {
         isAdmin = admin;
     }
+    
+    public Long getLastActivity() {
+        return lastActivity;
+    }
+    
+    public void setLastActivity(Long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
 }
 
 
@@ -0,0 +1,47 @@
+package com.example.base.dto;
+
+import java.util.List;
+
+/**
+ * Страница списка пользователей при постраничной загрузке по ключу id
+ */
+public class UserPage {
+    private List<UserInfo> users;
+    // id, после которого начинается следующая страница (null - страниц больше нет)
+    private Long nextCursor;
+    // Общее количество с учетом фильтров (по запросу, только для первой страницы; иначе null)
+    private Long total;
+    
+    public UserPage() {
+    }
+    
+    public UserPage(List<UserInfo> users, Long nextCursor, Long total) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+    
+    public List<UserInfo> getUsers() {
+        return users;
+    }
+    
+    public void setUsers(List<UserInfo> users) {
+        this.users = users;
+    }
+    
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public Long getTotal() {
+        return total;
+    }
+    
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+}
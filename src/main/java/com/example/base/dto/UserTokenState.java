@@ -0,0 +1,10 @@
+package com.example.base.dto;
+
+/**
+ * Проекция пользователя для проверки актуальности токена
+ */
+public interface UserTokenState {
+    Long getId();
+    
+    long getTokenVersion();
+}
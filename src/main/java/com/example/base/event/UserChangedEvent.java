@@ -0,0 +1,60 @@
+package com.example.base.event;
+
+/**
+ * Событие изменения пользователя. Публикуется сервисами при создании, изменении
+ * и удалении пользователя; слушатели обрабатывают его после фиксации транзакции.
+ */
+public class UserChangedEvent {
+    
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+    
+    private final Type type;
+    private final Long userId;
+    private final String previousUsername;
+    private final String username;
+    
+    public UserChangedEvent(Type type, Long userId, String previousUsername, String username) {
+        this.type = type;
+        this.userId = userId;
+        this.previousUsername = previousUsername;
+        this.username = username;
+    }
+    
+    public static UserChangedEvent created(Long userId, String username) {
+        return new UserChangedEvent(Type.CREATED, userId, null, username);
+    }
+    
+    public static UserChangedEvent updated(Long userId, String previousUsername, String username) {
+        return new UserChangedEvent(Type.UPDATED, userId, previousUsername, username);
+    }
+    
+    public static UserChangedEvent deleted(Long userId, String username) {
+        return new UserChangedEvent(Type.DELETED, userId, username, null);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    /**
+     * Имя пользователя до изменения (null для созданного пользователя)
+     */
+    public String getPreviousUsername() {
+        return previousUsername;
+    }
+    
+    /**
+     * Имя пользователя после изменения (null для удаленного пользователя)
+     */
+    public String getUsername() {
+        return username;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.base.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Refresh token: хранится только SHA-256 от значения, выданного клиенту.
+ * Все токены одной цепочки ротаций (от одного входа) имеют общий family_id.
+ * Пишется и читается из RefreshTokenService через JDBC; сущность нужна для создания таблицы.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id"),
+    @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
+public class RefreshToken {
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+    
+    // Версия токенов пользователя на момент входа: смена версии отзывает и refresh token
+    @Column(name = "token_version", nullable = false)
+    private long tokenVersion;
+    
+    // Срок действия, мс с начала эпохи
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+    
+    // Время ротации, мс с начала эпохи; повторное предъявление использованного токена - признак кражи
+    @Column(name = "used_at")
+    private Long usedAt;
+    
+    public RefreshToken() {
+    }
+    
+    public String getTokenHash() {
+        return tokenHash;
+    }
+    
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public String getFamilyId() {
+        return familyId;
+    }
+    
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+    
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+    
+    public void setTokenVersion(long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+    
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public Long getUsedAt() {
+        return usedAt;
+    }
+    
+    public void setUsedAt(Long usedAt) {
+        this.usedAt = usedAt;
+    }
+}
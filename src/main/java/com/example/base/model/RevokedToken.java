@@ -0,0 +1,59 @@
+package com.example.base.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Отозванный токен (по jti) до истечения его срока. Пишется и читается
+ * из TokenRevocationStore через JDBC; сущность нужна для создания таблицы.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+    @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at"),
+    @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at")
+})
+public class RevokedToken {
+    @Id
+    @Column(length = 64)
+    private String jti;
+    
+    // Срок действия токена, мс с начала эпохи; после него запись не нужна
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+    
+    // Время отзыва, мс с начала эпохи; по нему другие узлы забирают новые записи
+    @Column(name = "revoked_at", nullable = false)
+    private long revokedAt;
+    
+    public RevokedToken() {
+    }
+    
+    public RevokedToken(String jti, long expiresAt, long revokedAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+        this.revokedAt = revokedAt;
+    }
+    
+    public String getJti() {
+        return jti;
+    }
+    
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+    
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+    
+    public void setRevokedAt(long revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
@@ -5,8 +5,10 @@ import jakarta.persistence.*;
 @Entity
 @Table(name = "roles")
 public class Role {
+    // Последовательность с тем же шагом, что и у пользователей (см. User.ID_ALLOCATION_SIZE)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "roles_id_seq")
+    @SequenceGenerator(name = "roles_id_seq", sequenceName = "roles_id_seq", allocationSize = User.ID_ALLOCATION_SIZE)
     private Long id;
     
     @Enumerated(EnumType.STRING)
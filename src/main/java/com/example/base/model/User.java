@@ -1,15 +1,23 @@
 package com.example.base.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_change_seq", columnList = "change_seq"))
 public class User {
+    // id выдаются блоками из последовательности (оптимизатор pooled-lo): значение
+    // nextval резервирует id [value, value + ID_ALLOCATION_SIZE), что позволяет
+    // Hibernate откладывать вставки и отправлять их пакетами JDBC
+    public static final String ID_SEQUENCE = "users_id_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(unique = true, nullable = false)
@@ -21,7 +29,19 @@ public class User {
     @Column(nullable = false)
     private String email;
     
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Версия токенов: увеличивается при смене имени, пароля или ролей и отзывает ранее выданные токены
+    @Column(name = "token_version", nullable = false)
+    @ColumnDefault("0")
+    private long tokenVersion;
+    
+    // Номер последнего изменения (для /api/user/changes): присваивает UserChangeLog перед фиксацией
+    // транзакции, поэтому Hibernate колонку не пишет
+    @Column(name = "change_seq", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long changeSeq;
+    
+    // Роли загружаются явно (entity graph) только там, где они нужны
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
@@ -72,6 +92,22 @@ public class User {
         this.email = email;
     }
     
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+    
+    public void setTokenVersion(long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+    
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+    
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+    
     public Set<Role> getRoles() {
         return roles;
     }
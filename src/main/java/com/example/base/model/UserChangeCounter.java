@@ -0,0 +1,50 @@
+package com.example.base.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Счетчик изменений пользователей (одна строка). Блокировка строки при увеличении
+ * держится до фиксации транзакции, поэтому номера фиксируются строго по порядку.
+ * Пишется и читается из UserChangeLog через JDBC; сущность нужна для создания таблицы.
+ */
+@Entity
+@Table(name = "user_change_counter")
+public class UserChangeCounter {
+    @Id
+    private Integer id;
+    
+    // Последний выданный номер изменения
+    @Column(nullable = false)
+    private long seq;
+    
+    // Отметки об удалении с номером до purged_seq включительно уже удалены
+    @Column(name = "purged_seq", nullable = false)
+    private long purgedSeq;
+    
+    public UserChangeCounter() {
+    }
+    
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+    
+    public long getPurgedSeq() {
+        return purgedSeq;
+    }
+    
+    public void setPurgedSeq(long purgedSeq) {
+        this.purgedSeq = purgedSeq;
+    }
+}
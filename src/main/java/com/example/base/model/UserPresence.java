@@ -0,0 +1,57 @@
+package com.example.base.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * Последняя активность пользователя, общая для всех экземпляров приложения.
+ * Пишется пакетно из JdbcActiveUserStore; сущность нужна для создания таблицы.
+ */
+@Entity
+@Table(name = "user_presence", indexes = @Index(name = "idx_user_presence_last_seen", columnList = "last_seen"))
+public class UserPresence {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    // Время последней активности, мс с начала эпохи
+    @Column(name = "last_seen", nullable = false)
+    private long lastSeen;
+    
+    // Время последнего удаления из активных (выход), 0 - не удалялся; активен, если lastSeen новее
+    @Column(name = "removed_at", nullable = false)
+    @ColumnDefault("0")
+    private long removedAt;
+    
+    public UserPresence() {
+    }
+    
+    public UserPresence(Long userId, long lastSeen) {
+        this.userId = userId;
+        this.lastSeen = lastSeen;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public long getLastSeen() {
+        return lastSeen;
+    }
+    
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+    
+    public long getRemovedAt() {
+        return removedAt;
+    }
+    
+    public void setRemovedAt(long removedAt) {
+        this.removedAt = removedAt;
+    }
+}
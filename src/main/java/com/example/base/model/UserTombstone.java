@@ -0,0 +1,60 @@
+package com.example.base.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Отметка об удалении пользователя для /api/user/changes: клиенты, синхронизирующие
+ * список изменениями, узнают по ней об удалении. Хранится ограниченное время.
+ * Пишется и читается из UserChangeLog через JDBC; сущность нужна для создания таблицы.
+ */
+@Entity
+@Table(name = "user_tombstones", indexes = {
+    @Index(name = "idx_user_tombstones_change_seq", columnList = "change_seq"),
+    @Index(name = "idx_user_tombstones_deleted_at", columnList = "deleted_at")
+})
+public class UserTombstone {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    // Номер изменения, которым пользователь удален
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+    
+    // Время удаления, мс с начала эпохи; по нему удаляются устаревшие отметки
+    @Column(name = "deleted_at", nullable = false)
+    private long deletedAt;
+    
+    public UserTombstone() {
+    }
+    
+    public UserTombstone(Long userId, long changeSeq, long deletedAt) {
+        this.userId = userId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+    
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+    
+    public long getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -1,17 +1,92 @@
 package com.example.base.repository;
 
+import com.example.base.dto.UserInfo;
+import com.example.base.dto.UserTokenState;
 import com.example.base.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    
+    // Проекция сразу в UserInfo без загрузки сущностей; признак администратора вычисляется в SQL
+    String USER_INFO_SELECT = "select new com.example.base.dto.UserInfo(u.id, u.username, u.email, " +
+                              "case when exists (select r from u.roles r " +
+                              "where r.name = com.example.base.model.Role$RoleType.ADMIN) " +
+                              "then true else false end) from User u ";
+    
+    // Роли загружаются вместе с пользователем: нужны для аутентификации и изменения пользователя
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
+    
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesById(Long id);
+    
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+    Optional<UserTokenState> findTokenStateByUsername(String username);
+    
+    // Пересчитанный хэш того же пароля (версия токенов не меняется)
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+    
+    @Query(USER_INFO_SELECT + "where u.username = :username")
+    Optional<UserInfo> findUserInfoByUsername(@Param("username") String username);
+    
+    @Query(USER_INFO_SELECT + "where u.id in :ids")
+    List<UserInfo> findUserInfoByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Страницы по ключу id: фильтры по префиксу имени и email (шаблон LIKE или null)
+    @Query(USER_INFO_SELECT + "where u.id > :after " +
+           "and (:username is null or lower(u.username) like :username escape '\\') " +
+           "and (:email is null or lower(u.email) like :email escape '\\') " +
+           "order by u.id asc")
+    List<UserInfo> findUserInfoPageAfter(@Param("after") long after, @Param("username") String username,
+                                         @Param("email") String email, Limit limit);
+    
+    @Query(USER_INFO_SELECT + "where u.id < :before " +
+           "and (:username is null or lower(u.username) like :username escape '\\') " +
+           "and (:email is null or lower(u.email) like :email escape '\\') " +
+           "order by u.id desc")
+    List<UserInfo> findUserInfoPageBefore(@Param("before") long before, @Param("username") String username,
+                                          @Param("email") String email, Limit limit);
+    
+    // Изменения в диапазоне номеров (since, upTo] по порядку номеров
+    @Query(USER_INFO_SELECT + "where u.changeSeq > :since and u.changeSeq <= :upTo order by u.changeSeq")
+    List<UserInfo> findUserInfoChangedBetween(@Param("since") long since, @Param("upTo") long upTo, Limit limit);
+    
+    // Выгрузка всех пользователей курсором: строки читаются пачками по fetch size, а не целиком
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(USER_INFO_SELECT + "order by u.id")
+    Stream<UserInfo> streamAllUserInfo();
+    
+    @Query("select count(u) from User u " +
+           "where (:username is null or lower(u.username) like :username escape '\\') " +
+           "and (:email is null or lower(u.email) like :email escape '\\')")
+    long countByPrefix(@Param("username") String username, @Param("email") String email);
+    
+    // Массовая загрузка: занятые имена и email среди переданных одной выборкой на пачку
+    @Query("select u.username, u.email from User u where u.username in :usernames or u.email in :emails")
+    List<Object[]> findUsernamesAndEmails(@Param("usernames") Collection<String> usernames,
+                                          @Param("emails") Collection<String> emails);
 }
 
 
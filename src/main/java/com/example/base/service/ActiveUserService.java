@@ -1,13 +1,22 @@
 package com.example.base.service;
 
 import com.example.base.dto.UserInfo;
-import com.example.base.model.User;
+import com.example.base.event.UserChangedEvent;
 import com.example.base.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ActiveUserService {
@@ -15,89 +24,146 @@ public class ActiveUserService {
     @Autowired
     private UserRepository userRepository;
     
-    // Хранилище активных пользователей: username -> время последней активности
-    private final Map<String, Long> activeUsers = new ConcurrentHashMap<>();
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private CoarseClock clock;
+    
+    @Autowired
+    private ActiveUserStore activeUserStore;
     
-    // Таймаут неактивности (30 минут)
-    private static final long INACTIVITY_TIMEOUT = 30 * 60 * 1000; // 30 минут в миллисекундах
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Таймаут неактивности (по умолчанию 30 минут)
+    @Value("${app.active-users.inactivity-timeout:1800000}")
+    private long inactivityTimeout;
+    
+    // Размер пачки id в одном запросе при загрузке страницы
+    @Value("${app.active-users.batch-size:500}")
+    private int batchSize;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("users.active", this, ActiveUserService::getActiveUsersCount).register(meterRegistry);
+    }
     
     /**
      * Отметить пользователя как активного
      */
+    public void markUserActive(long userId) {
+        activeUserStore.touch(userId, clock.millis());
+    }
+    
+    /**
+     * Отметить пользователя как активного по имени (для токенов без id)
+     */
     public void markUserActive(String username) {
-        activeUsers.put(username, System.currentTimeMillis());
+        userCache.findId(username).ifPresent(this::markUserActive);
     }
     
     /**
      * Удалить пользователя из списка активных
      */
+    public void markUserInactive(long userId) {
+        activeUserStore.remove(userId);
+    }
+    
+    /**
+     * Удалить пользователя из списка активных по имени
+     */
     public void markUserInactive(String username) {
-        activeUsers.remove(username);
+        userCache.findId(username).ifPresent(this::markUserInactive);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.DELETED && event.getUserId() != null) {
+            markUserInactive(event.getUserId());
+        }
     }
     
     /**
      * Проверить, активен ли пользователь
      */
-    public boolean isUserActive(String username) {
-        Long lastActivity = activeUsers.get(username);
-        if (lastActivity == null) {
-            return false;
-        }
+    public boolean isUserActive(long userId) {
+        long lastActivity = activeUserStore.getLastActivity(userId);
         
         // Проверяем, не истек ли таймаут неактивности
-        long timeSinceLastActivity = System.currentTimeMillis() - lastActivity;
-        if (timeSinceLastActivity > INACTIVITY_TIMEOUT) {
-            activeUsers.remove(username);
-            return false;
-        }
-        
-        return true;
+        return lastActivity != ActiveUserStore.ABSENT && clock.millis() - lastActivity <= inactivityTimeout;
     }
     
     /**
-     * Получить список активных пользователей
+     * Получить страницу активных пользователей, отсортированных по времени последней активности.
+     * Сортировка и подсчет идут по таблице присутствия; из БД одним запросом
+     * (частями по batch-size) загружается только запрошенная страница.
      */
-    public List<UserInfo> getActiveUsers() {
-        // Очищаем неактивных пользователей
-        cleanupInactiveUsers();
+    public Page<UserInfo> getActiveUsers(int page, int size, boolean mostRecentFirst) {
+        long currentTime = clock.millis();
+        List<long[]> active = new ArrayList<>();
         
-        List<UserInfo> activeUsersList = new ArrayList<>();
+        activeUserStore.forEachActive(currentTime - inactivityTimeout,
+            (userId, lastActivity) -> active.add(new long[] {userId, lastActivity}));
         
-        for (String username : activeUsers.keySet()) {
-            if (isUserActive(username)) {
-                Optional<User> userOpt = userRepository.findByUsername(username);
-                if (userOpt.isPresent()) {
-                    User user = userOpt.get();
-                    activeUsersList.add(new UserInfo(
-                        user.getId(),
-                        user.getUsername(),
-                        user.getEmail(),
-                        user.isAdmin()
-                    ));
-                }
-            }
+        Comparator<long[]> byActivity = Comparator.<long[]>comparingLong(entry -> entry[1])
+            .thenComparingLong(entry -> entry[0]);
+        active.sort(mostRecentFirst ? byActivity.reversed() : byActivity);
+        
+        Pageable pageable = PageRequest.of(page, size);
+        int from = (int) Math.min(pageable.getOffset(), active.size());
+        int to = Math.min(from + size, active.size());
+        List<long[]> slice = active.subList(from, to);
+        
+        List<UserInfo> content = hydrate(slice);
+        return new PageImpl<>(content, pageable, active.size());
+    }
+    
+    /**
+     * Получить id активных пользователей со временем последней активности
+     */
+    public Map<Long, Long> getActiveSnapshot() {
+        Map<Long, Long> active = new HashMap<>();
+        activeUserStore.forEachActive(clock.millis() - inactivityTimeout, active::put);
+        return active;
+    }
+    
+    /**
+     * Загрузить UserInfo для записей присутствия [id, время активности], сохранив их порядок
+     */
+    public List<UserInfo> hydrate(List<long[]> entries) {
+        Map<Long, UserInfo> byId = new HashMap<>(entries.size() * 2);
+        for (int i = 0; i < entries.size(); i += batchSize) {
+            List<Long> ids = entries.subList(i, Math.min(i + batchSize, entries.size())).stream()
+                .map(entry -> entry[0])
+                .toList();
+            userRepository.findUserInfoByIdIn(ids).forEach(user -> byId.put(user.getId(), user));
         }
         
-        return activeUsersList;
+        List<UserInfo> result = new ArrayList<>(entries.size());
+        for (long[] entry : entries) {
+            // Пользователь мог быть удален между снимком и запросом
+            UserInfo user = byId.get(entry[0]);
+            if (user != null) {
+                user.setLastActivity(entry[1]);
+                result.add(user);
+            }
+        }
+        return result;
     }
     
     /**
      * Очистить неактивных пользователей
      */
-    private void cleanupInactiveUsers() {
-        long currentTime = System.currentTimeMillis();
-        activeUsers.entrySet().removeIf(entry -> {
-            long timeSinceLastActivity = currentTime - entry.getValue();
-            return timeSinceLastActivity > INACTIVITY_TIMEOUT;
-        });
+    @Scheduled(fixedDelayString = "${app.active-users.sweep-interval:1000}")
+    public void cleanupInactiveUsers() {
+        activeUserStore.expire(clock.millis() - inactivityTimeout);
     }
     
     /**
      * Получить количество активных пользователей
      */
     public int getActiveUsersCount() {
-        cleanupInactiveUsers();
-        return activeUsers.size();
+        return activeUserStore.count();
     }
 }
-
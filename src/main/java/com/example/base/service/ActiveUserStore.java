@@ -0,0 +1,50 @@
+package com.example.base.service;
+
+/**
+ * Хранилище присутствия: id пользователя -> время последней активности.
+ *
+ * Реализация выбирается свойством app.presence.store: memory - таблица в памяти
+ * узла, jdbc - общая таблица user_presence для нескольких экземпляров приложения.
+ */
+public interface ActiveUserStore {
+    
+    /**
+     * Значение для отсутствующего пользователя
+     */
+    long ABSENT = LongLongPresenceTable.ABSENT;
+    
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long userId, long lastActivity);
+    }
+    
+    /**
+     * Отметить активность пользователя
+     */
+    void touch(long userId, long timestamp);
+    
+    /**
+     * Удалить пользователя из активных
+     */
+    void remove(long userId);
+    
+    /**
+     * Время последней активности или ABSENT
+     */
+    long getLastActivity(long userId);
+    
+    /**
+     * Обойти пользователей, активных не раньше activeSince
+     */
+    void forEachActive(long activeSince, EntryConsumer consumer);
+    
+    /**
+     * Количество активных пользователей
+     */
+    int count();
+    
+    /**
+     * Удалить записи, активность которых старше activeSince
+     */
+    void expire(long activeSince);
+}
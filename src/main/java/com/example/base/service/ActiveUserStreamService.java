@@ -0,0 +1,217 @@
+package com.example.base.service;
+
+import com.example.base.dto.UserInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Рассылка изменений списка активных пользователей через Server-Sent Events.
+ *
+ * При подключении клиент получает событие snapshot (первая страница списка и общее
+ * количество), затем события delta: раз в app.active-users.stream.interval текущий
+ * набор активных сравнивается с предыдущим, и вошедшие и вышедшие пользователи
+ * отправляются одной пачкой всем подписчикам.
+ *
+ * У каждого подключения своя ограниченная очередь пачек. Если клиент не успевает
+ * читать и очередь переполнена, накопленные пачки отбрасываются и вместо них
+ * отправляется новый snapshot, поэтому медленный клиент не задерживает остальных
+ * и не накапливает память на сервере.
+ *
+ * Пачки нумеруются. Перед построением snapshot накопленные изменения рассылаются,
+ * и подписчик запоминает номер последней пачки: пачки с этим номером и меньше
+ * посчитаны от набора, уже учтенного в snapshot, и ему не отправляются.
+ */
+@Service
+public class ActiveUserStreamService {
+    
+    @Autowired
+    private ActiveUserService activeUserService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Максимальное число пачек, ожидающих отправки одному клиенту
+    @Value("${app.active-users.stream.queue-size:64}")
+    private int queueSize;
+    
+    // Время жизни подключения; после него клиент переподключается
+    @Value("${app.active-users.stream.timeout:1800000}")
+    private long timeout;
+    
+    // Количество пользователей в snapshot
+    @Value("${app.active-users.stream.snapshot-size:100}")
+    private int snapshotSize;
+    
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    
+    // Отправка идет в отдельных виртуальных потоках, не блокируя рассылку
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    
+    // Активные пользователи на момент последней рассылки (null - пока нет подписчиков)
+    private Map<Long, Long> previous;
+    
+    // Номер последней разосланной пачки
+    private long version;
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("users.active.stream.subscribers", subscribers, Set::size).register(meterRegistry);
+    }
+    
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Delta> queue;
+        private final AtomicBoolean resync = new AtomicBoolean(true);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Номер последней пачки, учтенной в отправленном snapshot (меняется только при отправке)
+        private long snapshotVersion;
+        
+        private Subscriber(SseEmitter emitter, int queueSize) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+    
+    private record Delta(long version, Map<String, Object> data) {
+    }
+    
+    /**
+     * Подписаться на изменения списка активных пользователей
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = new Subscriber(emitter, queueSize);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        
+        synchronized (this) {
+            subscribers.add(subscriber);
+            // Первый подписчик: запоминаем исходный набор, от которого считаются изменения
+            if (previous == null) {
+                previous = activeUserService.getActiveSnapshot();
+            }
+        }
+        
+        // Первым событием уйдет snapshot
+        drain(subscriber);
+        return emitter;
+    }
+    
+    /**
+     * Сравнить текущий набор активных с предыдущим и разослать изменения
+     */
+    @Scheduled(fixedDelayString = "${app.active-users.stream.interval:1000}")
+    public synchronized void publish() {
+        if (subscribers.isEmpty()) {
+            previous = null;
+            return;
+        }
+        
+        Map<Long, Long> current = activeUserService.getActiveSnapshot();
+        List<long[]> joined = new ArrayList<>();
+        current.forEach((userId, lastActivity) -> {
+            if (!previous.containsKey(userId)) {
+                joined.add(new long[] {userId, lastActivity});
+            }
+        });
+        List<Long> left = previous.keySet().stream()
+            .filter(userId -> !current.containsKey(userId))
+            .toList();
+        previous = current;
+        
+        if (joined.isEmpty() && left.isEmpty()) {
+            return;
+        }
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("joined", activeUserService.hydrate(joined));
+        data.put("left", left);
+        data.put("total", current.size());
+        Delta delta = new Delta(++version, data);
+        
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offer(delta)) {
+                // Клиент отстал: вместо очереди изменений он получит новый snapshot
+                subscriber.queue.clear();
+                subscriber.resync.set(true);
+            }
+            drain(subscriber);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+    
+    /**
+     * Запустить отправку очереди клиенту, если она еще не идет
+     */
+    private void drain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            sender.execute(() -> send(subscriber));
+        }
+    }
+    
+    private void send(Subscriber subscriber) {
+        try {
+            while (true) {
+                if (subscriber.resync.getAndSet(false)) {
+                    subscriber.queue.clear();
+                    subscriber.emitter.send(SseEmitter.event().name("snapshot").data(snapshot(subscriber)));
+                    continue;
+                }
+                Delta delta = subscriber.queue.poll();
+                if (delta == null) {
+                    break;
+                }
+                if (delta.version() <= subscriber.snapshotVersion) {
+                    // Посчитана до snapshot: ее изменения в нем уже есть
+                    continue;
+                }
+                subscriber.emitter.send(SseEmitter.event().name("delta").data(delta.data()));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился
+            subscribers.remove(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        
+        // Пачка могла прийти между последней проверкой очереди и сбросом флага
+        if ((subscriber.resync.get() || !subscriber.queue.isEmpty()) && subscribers.contains(subscriber)) {
+            drain(subscriber);
+        }
+    }
+    
+    /**
+     * Построить snapshot для подписчика. Под блокировкой рассылки: сначала рассылаются
+     * изменения, накопленные к этому моменту, поэтому следующая пачка считается от того
+     * же набора, что и snapshot
+     */
+    private synchronized Map<String, Object> snapshot(Subscriber subscriber) {
+        publish();
+        subscriber.snapshotVersion = version;
+        Page<UserInfo> page = activeUserService.getActiveUsers(0, snapshotSize, true);
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("users", page.getContent());
+        snapshot.put("total", page.getTotalElements());
+        return snapshot;
+    }
+}
@@ -3,14 +3,19 @@ package com.example.base.service;
 import com.example.base.dto.AuthResponse;
 import com.example.base.dto.LoginRequest;
 import com.example.base.dto.RegisterRequest;
+import com.example.base.dto.UserTokenState;
+import com.example.base.event.UserChangedEvent;
 import com.example.base.model.Role;
 import com.example.base.model.User;
-import com.example.base.repository.RoleRepository;
 import com.example.base.repository.UserRepository;
 import com.example.base.config.JwtUtil;
+import com.example.base.config.PasswordHashingRejectedException;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -26,7 +31,7 @@ public class AuthService {
     private UserRepository userRepository;
     
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
     
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -43,7 +48,34 @@ public class AuthService {
     @Autowired
     private ActiveUserService activeUserService;
     
-    public void logout() {
+    @Autowired
+    private LoginThrottle loginThrottle;
+    
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+    
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * Выход: токен отзывается до истечения срока, цепочка refresh token удаляется,
+     * пользователь удаляется из активных
+     */
+    public void logout(String token, String refreshToken) {
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+        if (token != null) {
+            try {
+                tokenRevocationStore.revoke(jwtUtil.extractAllClaims(token));
+            } catch (JwtException | IllegalArgumentException e) {
+                // Недействительный или истекший токен отзывать не нужно
+            }
+        }
+        
         // Получаем имя текущего пользователя из SecurityContext
         org.springframework.security.core.Authentication authentication = 
             org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
@@ -71,48 +103,85 @@ public class AuthService {
         user.setEmail(request.getEmail());
         
         Set<Role> roles = new HashSet<>();
-        Role userRole = roleRepository.findByName(Role.RoleType.USER)
-            .orElseGet(() -> {
-                Role newRole = new Role();
-                newRole.setName(Role.RoleType.USER);
-                return roleRepository.save(newRole);
-            });
+        Role userRole = roleRegistry.get(Role.RoleType.USER);
         roles.add(userRole);
         user.setRoles(roles);
         
         userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.created(user.getId(), user.getUsername()));
         
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtUtil.generateToken(userDetails, false);
+        UserDetails userDetails = userDetailsService.createUserDetails(user);
+        String token = jwtUtil.generateToken(userDetails, false, user.getId(), user.getTokenVersion());
         
-        return new AuthResponse(token, user.getUsername(), false, "Registration successful");
+        AuthResponse response = new AuthResponse(token, user.getUsername(), false, "Registration successful");
+        response.setRefreshToken(refreshTokenService.issue(user.getId(), user.getTokenVersion()));
+        return response;
     }
     
-    public AuthResponse login(LoginRequest request) {
+    public AuthResponse login(LoginRequest request, String clientAddress) {
+        // Лимит попыток проверяется до сравнения пароля, чтобы перебор не тратил CPU
+        loginThrottle.acquire(request.getUsername(), clientAddress);
+        
         try {
-            authenticationManager.authenticate(
+            // Пользователь и роли загружены из БД при проверке пароля (principal без пароля)
+            UserDetails userDetails = (UserDetails) authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                     request.getUsername(),
                     request.getPassword()
                 )
-            );
+            ).getPrincipal();
             
-            User user = userRepository.findByUsername(request.getUsername())
+            UserTokenState user = userRepository.findTokenStateByUsername(userDetails.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
             
-            UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-            boolean isAdmin = user.isAdmin();
-            String token = jwtUtil.generateToken(userDetails, isAdmin);
+            boolean isAdmin = userDetails.getAuthorities().stream()
+                .anyMatch(authority -> ("ROLE_" + Role.RoleType.ADMIN.name()).equals(authority.getAuthority()));
+            String token = jwtUtil.generateToken(userDetails, isAdmin, user.getId(), user.getTokenVersion());
             
             // Отметить пользователя как активного
-            activeUserService.markUserActive(user.getUsername());
+            activeUserService.markUserActive(user.getId());
+            loginThrottle.onSuccess(request.getUsername(), clientAddress);
             
-            return new AuthResponse(token, user.getUsername(), isAdmin, "Login successful");
+            AuthResponse response = new AuthResponse(token, userDetails.getUsername(), isAdmin, "Login successful");
+            response.setRefreshToken(refreshTokenService.issue(user.getId(), user.getTokenVersion()));
+            return response;
+        } catch (PasswordHashingRejectedException e) {
+            // Не выдаем перегрузку за неверный пароль: ответ 503 формирует ApiExceptionHandler
+            throw e;
+        } catch (AuthenticationException e) {
+            loginThrottle.onFailure(request.getUsername(), clientAddress);
+            return new AuthResponse(null, null, false, "Invalid username or password");
         } catch (Exception e) {
             return new AuthResponse(null, null, false, "Invalid username or password");
         }
     }
     
+    /**
+     * Новый access token по refresh token без проверки пароля; refresh token ротируется.
+     * Смена версии токенов пользователя (пароль, роли) отзывает и цепочку refresh token
+     */
+    public AuthResponse refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken).orElse(null);
+        if (rotation == null) {
+            return new AuthResponse(null, null, false, "Invalid refresh token");
+        }
+        
+        // Роли и версия токенов - из БД: кэш на других узлах может не знать о последних изменениях
+        User user = userRepository.findByUsername(rotation.username()).orElse(null);
+        if (user == null || user.getId() != rotation.userId() || user.getTokenVersion() != rotation.tokenVersion()) {
+            refreshTokenService.revokeFamily(rotation.familyId());
+            return new AuthResponse(null, null, false, "Invalid refresh token");
+        }
+        
+        UserDetails userDetails = userDetailsService.createUserDetails(user);
+        String token = jwtUtil.generateToken(userDetails, user.isAdmin(), user.getId(), user.getTokenVersion());
+        activeUserService.markUserActive(user.getId());
+        
+        AuthResponse response = new AuthResponse(token, user.getUsername(), user.isAdmin(), "Token refreshed");
+        response.setRefreshToken(rotation.refreshToken());
+        return response;
+    }
+    
     @Transactional
     public String registerByAdmin(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -130,25 +199,16 @@ public class AuthService {
         
         Set<Role> roles = new HashSet<>();
         if (request.isAdmin()) {
-            Role adminRole = roleRepository.findByName(Role.RoleType.ADMIN)
-                .orElseGet(() -> {
-                    Role newRole = new Role();
-                    newRole.setName(Role.RoleType.ADMIN);
-                    return roleRepository.save(newRole);
-                });
+            Role adminRole = roleRegistry.get(Role.RoleType.ADMIN);
             roles.add(adminRole);
         } else {
-            Role userRole = roleRepository.findByName(Role.RoleType.USER)
-                .orElseGet(() -> {
-                    Role newRole = new Role();
-                    newRole.setName(Role.RoleType.USER);
-                    return roleRepository.save(newRole);
-                });
+            Role userRole = roleRegistry.get(Role.RoleType.USER);
             roles.add(userRole);
         }
         user.setRoles(roles);
         
         userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.created(user.getId(), user.getUsername()));
         
         return "User registered successfully";
     }
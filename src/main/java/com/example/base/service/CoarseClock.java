@@ -0,0 +1,54 @@
+package com.example.base.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Грубые часы: текущее время обновляет фоновый поток с заданным шагом,
+ * а горячий путь читает одно volatile-поле вместо System.currentTimeMillis().
+ */
+@Component
+public class CoarseClock {
+    
+    @Value("${app.clock.resolution:50}")
+    private long resolution;
+    
+    private volatile long now = System.currentTimeMillis();
+    
+    private volatile boolean running;
+    
+    private Thread ticker;
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        ticker = new Thread(() -> {
+            while (running) {
+                now = System.currentTimeMillis();
+                try {
+                    Thread.sleep(resolution);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+    
+    /**
+     * Текущее время в миллисекундах с точностью до шага часов
+     */
+    public long millis() {
+        return now;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.base.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Колесо таймеров для истечения активности.
+ *
+ * Ключ помещается в слот тика активности при добавлении и лежит только в одном
+ * слоте. При повороте колеса просматриваются только слоты, все записи которых
+ * старше таймаута, поэтому стоимость очистки пропорциональна числу истекших
+ * записей, а не размеру карты. Ключи, активность которых с тех пор обновилась,
+ * проверяет и заново планирует вызывающая сторона - не чаще раза за таймаут.
+ */
+class ExpiryWheel<K> {
+    
+    private final long tickMillis;
+    private final long timeoutTicks;
+    private final List<Set<K>> slots;
+    
+    // Последний обработанный тик
+    private long sweptTick;
+    
+    ExpiryWheel(long timeoutMillis, long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.timeoutTicks = (timeoutMillis + tickMillis - 1) / tickMillis;
+        // Запас в несколько слотов, чтобы запоздавший поворот не пересекся с новыми тиками
+        int slotCount = (int) timeoutTicks + 4;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.sweptTick = tick(now) - timeoutTicks - 1;
+    }
+    
+    long tick(long timestamp) {
+        return timestamp / tickMillis;
+    }
+    
+    /**
+     * Запланировать истечение ключа по времени активности
+     */
+    void schedule(K key, long timestamp) {
+        slots.get(slot(tick(timestamp))).add(key);
+    }
+    
+    /**
+     * Повернуть колесо: передать ключи из слотов, целиком вышедших за таймаут
+     */
+    synchronized void advance(long now, Consumer<K> candidates) {
+        long lastExpiredTick = tick(now) - timeoutTicks - 1;
+        // После долгой паузы достаточно одного оборота колеса
+        long from = Math.max(sweptTick + 1, lastExpiredTick - slots.size() + 1);
+        for (long t = from; t <= lastExpiredTick; t++) {
+            Iterator<K> iterator = slots.get(slot(t)).iterator();
+            while (iterator.hasNext()) {
+                K key = iterator.next();
+                iterator.remove();
+                candidates.accept(key);
+            }
+        }
+        sweptTick = Math.max(sweptTick, lastExpiredTick);
+    }
+    
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.size());
+    }
+}
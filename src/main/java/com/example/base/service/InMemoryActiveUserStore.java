@@ -0,0 +1,103 @@
+package com.example.base.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Присутствие в памяти узла: таблица на примитивах и колесо таймеров для истечения.
+ * Подходит для одного экземпляра приложения.
+ */
+@Component
+@ConditionalOnProperty(name = "app.presence.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryActiveUserStore implements ActiveUserStore {
+    
+    @Autowired
+    private CoarseClock clock;
+    
+    // id пользователя -> время последней активности
+    private final LongLongPresenceTable activeUsers = new LongLongPresenceTable(64, 1024);
+    
+    // Количество активных пользователей, поддерживается при добавлении и удалении
+    private final AtomicInteger activeCount = new AtomicInteger();
+    
+    @Value("${app.active-users.inactivity-timeout:1800000}")
+    private long inactivityTimeout;
+    
+    @Value("${app.active-users.sweep-interval:1000}")
+    private long sweepInterval;
+    
+    // Время активности перезаписывается, только если сдвинулось не меньше чем на это значение
+    @Value("${app.active-users.write-granularity:1000}")
+    private long writeGranularity;
+    
+    private ExpiryWheel<Long> expiryWheel;
+    
+    @PostConstruct
+    public void init() {
+        expiryWheel = new ExpiryWheel<>(inactivityTimeout, sweepInterval, clock.millis());
+    }
+    
+    @Override
+    public void touch(long userId, long timestamp) {
+        long previous = activeUsers.touch(userId, timestamp, writeGranularity);
+        // В колесо ключ попадает только при добавлении; продолжающуюся активность
+        // учитывает поворот колеса, перенося ключ в слот последнего тика
+        if (previous == ABSENT) {
+            activeCount.incrementAndGet();
+            expiryWheel.schedule(userId, timestamp);
+        }
+    }
+    
+    @Override
+    public void remove(long userId) {
+        if (activeUsers.remove(userId) != ABSENT) {
+            activeCount.decrementAndGet();
+        }
+    }
+    
+    @Override
+    public long getLastActivity(long userId) {
+        return activeUsers.get(userId);
+    }
+    
+    @Override
+    public void forEachActive(long activeSince, EntryConsumer consumer) {
+        // Записи, истекшие после последнего поворота колеса, пропускаем
+        activeUsers.forEach((userId, lastActivity) -> {
+            if (lastActivity >= activeSince) {
+                consumer.accept(userId, lastActivity);
+            }
+        });
+    }
+    
+    @Override
+    public int count() {
+        return activeCount.get();
+    }
+    
+    /**
+     * Просматриваются только истекшие слоты колеса
+     */
+    @Override
+    public void expire(long activeSince) {
+        expiryWheel.advance(activeSince + inactivityTimeout, userId -> {
+            long lastActivity = activeUsers.get(userId);
+            if (lastActivity == ABSENT) {
+                return;
+            }
+            if (lastActivity < activeSince) {
+                if (activeUsers.remove(userId, lastActivity)) {
+                    activeCount.decrementAndGet();
+                }
+            } else {
+                // Активность обновилась - переносим ключ в слот нового тика
+                expiryWheel.schedule(userId, lastActivity);
+            }
+        });
+    }
+}
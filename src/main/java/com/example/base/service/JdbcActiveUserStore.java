@@ -0,0 +1,250 @@
+package com.example.base.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общее присутствие для нескольких экземпляров приложения в таблице user_presence.
+ *
+ * Отметки активности копятся в памяти узла и раз в app.presence.flush-interval
+ * записываются одним пакетным upsert. Чтение объединяет состояние кластера,
+ * закэшированное на app.presence.read-cache-ttl, с еще не записанными локальными
+ * отметками, поэтому список активных на разных узлах отличается не больше чем
+ * на интервал сброса плюс время жизни кэша.
+ *
+ * Удаление (выход, удаление пользователя) не стирает строку, а записывает в нее
+ * время удаления removed_at: пользователь активен, только если last_seen новее.
+ * Узлы при обновлении снимка сбрасывают локальные отметки не новее удаления,
+ * поэтому ни локальная таблица, ни повторный upsert не возвращают пользователя.
+ * Как и для last_seen, предполагается, что часы узлов синхронизированы.
+ */
+@Component
+@ConditionalOnProperty(name = "app.presence.store", havingValue = "jdbc")
+public class JdbcActiveUserStore implements ActiveUserStore {
+    
+    private static final String POSTGRES_UPSERT_SQL =
+        "INSERT INTO user_presence (user_id, last_seen, removed_at) VALUES (?, ?, 0) " +
+        "ON CONFLICT (user_id) DO UPDATE SET last_seen = GREATEST(user_presence.last_seen, EXCLUDED.last_seen)";
+    
+    // Для остальных БД (например, H2 в тестовом окружении) - стандартный MERGE
+    private static final String MERGE_UPSERT_SQL =
+        "MERGE INTO user_presence t USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) s (user_id, last_seen) " +
+        "ON t.user_id = s.user_id " +
+        "WHEN MATCHED THEN UPDATE SET last_seen = GREATEST(t.last_seen, s.last_seen) " +
+        "WHEN NOT MATCHED THEN INSERT (user_id, last_seen, removed_at) VALUES (s.user_id, s.last_seen, 0)";
+    
+    private static final String POSTGRES_REMOVE_SQL =
+        "INSERT INTO user_presence (user_id, last_seen, removed_at) VALUES (?, 0, ?) " +
+        "ON CONFLICT (user_id) DO UPDATE SET removed_at = GREATEST(user_presence.removed_at, EXCLUDED.removed_at)";
+    
+    private static final String MERGE_REMOVE_SQL =
+        "MERGE INTO user_presence t USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) s (user_id, removed_at) " +
+        "ON t.user_id = s.user_id " +
+        "WHEN MATCHED THEN UPDATE SET removed_at = GREATEST(t.removed_at, s.removed_at) " +
+        "WHEN NOT MATCHED THEN INSERT (user_id, last_seen, removed_at) VALUES (s.user_id, 0, s.removed_at)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private CoarseClock clock;
+    
+    @Value("${app.active-users.inactivity-timeout:1800000}")
+    private long inactivityTimeout;
+    
+    @Value("${app.active-users.write-granularity:1000}")
+    private long writeGranularity;
+    
+    // Время жизни локальной копии состояния кластера
+    @Value("${app.presence.read-cache-ttl:2000}")
+    private long readCacheTtl;
+    
+    @Value("${app.presence.batch-size:500}")
+    private int batchSize;
+    
+    // Последняя активность, отмеченная на этом узле
+    private final LongLongPresenceTable local = new LongLongPresenceTable(64, 1024);
+    
+    // Пользователи, отмеченные после последнего сброса в БД
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    
+    private volatile Snapshot snapshot = Snapshot.STALE;
+    
+    private String upsertSql;
+    
+    private String removeSql;
+    
+    /**
+     * Состояние кластера на момент загрузки (только активные, без удаленных)
+     */
+    private record Snapshot(long loadedAt, Map<Long, Long> lastActivity) {
+        // Устаревший снимок: будет перезагружен при первом чтении
+        static final Snapshot STALE = new Snapshot(0L, Map.of());
+    }
+    
+    @PostConstruct
+    public void init() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        boolean postgres = "PostgreSQL".equalsIgnoreCase(product);
+        upsertSql = postgres ? POSTGRES_UPSERT_SQL : MERGE_UPSERT_SQL;
+        removeSql = postgres ? POSTGRES_REMOVE_SQL : MERGE_REMOVE_SQL;
+    }
+    
+    @Override
+    public void touch(long userId, long timestamp) {
+        long previous = local.touch(userId, timestamp, writeGranularity);
+        if (previous == ABSENT || timestamp - previous >= writeGranularity) {
+            dirty.add(userId);
+        }
+    }
+    
+    @Override
+    public void remove(long userId) {
+        dirty.remove(userId);
+        local.remove(userId);
+        // Отметка об удалении для остальных узлов; строка удалится вместе с истекшими
+        jdbcTemplate.update(removeSql, userId, clock.millis());
+        // Следующее чтение загрузит состояние кластера заново
+        snapshot = Snapshot.STALE;
+    }
+    
+    @Override
+    public long getLastActivity(long userId) {
+        Long shared = snapshot().lastActivity().get(userId);
+        long own = local.get(userId);
+        return shared != null ? Math.max(shared, own) : own;
+    }
+    
+    @Override
+    public void forEachActive(long activeSince, EntryConsumer consumer) {
+        merged(activeSince).forEach(consumer::accept);
+    }
+    
+    @Override
+    public int count() {
+        return merged(clock.millis() - inactivityTimeout).size();
+    }
+    
+    /**
+     * Удалить истекшие локальные отметки; строки в БД удаляются при сбросе
+     */
+    @Override
+    public void expire(long activeSince) {
+        List<long[]> expired = new ArrayList<>();
+        local.forEach((userId, lastActivity) -> {
+            if (lastActivity < activeSince) {
+                expired.add(new long[] {userId, lastActivity});
+            }
+        });
+        for (long[] entry : expired) {
+            local.remove(entry[0], entry[1]);
+        }
+    }
+    
+    /**
+     * Записать накопленные отметки одним пакетом и удалить истекшие строки
+     */
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval:5000}")
+    @PreDestroy
+    public void flush() {
+        List<long[]> batch = new ArrayList<>();
+        Iterator<Long> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            Long userId = iterator.next();
+            iterator.remove();
+            long lastActivity = local.get(userId);
+            if (lastActivity != ABSENT) {
+                batch.add(new long[] {userId, lastActivity});
+            }
+        }
+        
+        if (!batch.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(upsertSql, batch, batchSize, (ps, entry) -> {
+                    ps.setLong(1, entry[0]);
+                    ps.setLong(2, entry[1]);
+                });
+            } catch (RuntimeException e) {
+                // Отметки не потеряны: будут записаны при следующем сбросе
+                batch.forEach(entry -> dirty.add(entry[0]));
+                throw e;
+            }
+        }
+        
+        // Отметка об удалении живет таймаут: дольше локальные отметки других узлов не хранятся
+        long activeSince = clock.millis() - inactivityTimeout;
+        jdbcTemplate.update("DELETE FROM user_presence WHERE last_seen < ? AND removed_at < ?", activeSince, activeSince);
+    }
+    
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        long now = clock.millis();
+        if (now - current.loadedAt() <= readCacheTtl) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (now - current.loadedAt() <= readCacheTtl) {
+                return current;
+            }
+            long activeSince = now - inactivityTimeout;
+            Map<Long, Long> lastActivity = new HashMap<>();
+            Map<Long, Long> removedAt = new HashMap<>();
+            jdbcTemplate.query("SELECT user_id, last_seen, removed_at FROM user_presence WHERE last_seen >= ? OR removed_at >= ?",
+                rs -> {
+                    long lastSeen = rs.getLong(2);
+                    long removed = rs.getLong(3);
+                    if (lastSeen > removed) {
+                        if (lastSeen >= activeSince) {
+                            lastActivity.put(rs.getLong(1), lastSeen);
+                        }
+                    } else {
+                        removedAt.put(rs.getLong(1), removed);
+                    }
+                },
+                activeSince, activeSince);
+            
+            // Удаления на других узлах: локальная отметка не новее удаления иначе вернула бы
+            // пользователя в список, а при сбросе - и в БД. Для отсутствующих в local записей
+            // в dirty сброс ничего не пишет
+            removedAt.forEach((userId, removed) -> {
+                long own = local.get(userId);
+                if (own != ABSENT && own <= removed) {
+                    local.remove(userId, own);
+                }
+            });
+            current = new Snapshot(now, lastActivity);
+            snapshot = current;
+            return current;
+        }
+    }
+    
+    /**
+     * Состояние кластера, дополненное еще не записанными отметками этого узла
+     */
+    private Map<Long, Long> merged(long activeSince) {
+        Map<Long, Long> result = new HashMap<>();
+        snapshot().lastActivity().forEach((userId, lastActivity) -> {
+            if (lastActivity >= activeSince) {
+                result.put(userId, lastActivity);
+            }
+        });
+        local.forEach((userId, lastActivity) -> {
+            if (lastActivity >= activeSince) {
+                result.merge(userId, lastActivity, Math::max);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.base.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ограничение попыток входа по паре (имя пользователя, IP) и по IP клиента.
+ *
+ * Проверка выполняется до проверки пароля, поэтому перебор паролей не тратит CPU
+ * на BCrypt. На пару (имя, IP) и на IP - корзина токенов (попытка расходует токен,
+ * токены восстанавливаются с постоянной скоростью); токен IP берется, только если
+ * пропустили проверки пары. После серии неудачных входов подряд включается
+ * экспоненциальная пауза для пары. Ни один из этих пределов не зависит от попыток
+ * с других адресов, поэтому чужой клиент не может заблокировать владельца учетной записи.
+ *
+ * Общий предел на имя пользователя расходуется только неудачными входами и ничего
+ * не отклоняет сам: когда он исчерпан (подбор пароля с многих адресов), пауза
+ * для пары включается с первой неудачи, без free-failures. Клиент без неудач под
+ * этим именем по-прежнему проходит. Состояние меняется через CAS, без блокировок.
+ *
+ * Состояние хранится в ограниченных кэшах Caffeine и удаляется после простоя.
+ * Метрики: auth.login.throttled (отклоненные попытки, тег key) и
+ * auth.login.throttle.keys (количество отслеживаемых ключей).
+ */
+@Service
+public class LoginThrottle {
+    
+    @Autowired
+    private CoarseClock clock;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.login-throttle.enabled:true}")
+    private boolean enabled;
+    
+    // Корзина на пару (имя, IP): емкость и интервал восстановления одного токена (мс)
+    @Value("${app.login-throttle.username-ip.capacity:10}")
+    private int pairCapacity;
+    
+    @Value("${app.login-throttle.username-ip.refill-interval:6000}")
+    private long pairRefillInterval;
+    
+    // Корзина на IP клиента
+    @Value("${app.login-throttle.ip.capacity:100}")
+    private int ipCapacity;
+    
+    @Value("${app.login-throttle.ip.refill-interval:600}")
+    private long ipRefillInterval;
+    
+    // Неудачные входы под одним именем со всех адресов, после которых пауза идет без free-failures
+    @Value("${app.login-throttle.username.capacity:10}")
+    private int usernameCapacity;
+    
+    @Value("${app.login-throttle.username.refill-interval:6000}")
+    private long usernameRefillInterval;
+    
+    // Неудачных входов подряд для пары без паузы; дальше пауза удваивается от base до max (мс)
+    @Value("${app.login-throttle.backoff.free-failures:3}")
+    private int freeFailures;
+    
+    @Value("${app.login-throttle.backoff.base:1000}")
+    private long backoffBase;
+    
+    @Value("${app.login-throttle.backoff.max:300000}")
+    private long backoffMax;
+    
+    @Value("${app.login-throttle.max-keys:100000}")
+    private long maxKeys;
+    
+    // Корзина удаляется, если к ней не обращались указанное время (мс)
+    @Value("${app.login-throttle.idle-timeout:900000}")
+    private long idleTimeout;
+    
+    private Cache<PairKey, Pair> pairs;
+    private Cache<String, Bucket> addresses;
+    private Cache<String, Bucket> usernameFailures;
+    
+    private record PairKey(String username, String address) {
+    }
+    
+    // Корзина попыток и серия неудач одной пары (имя, IP)
+    private record Pair(Bucket attempts, Backoff backoff) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        pairs = buildCache();
+        addresses = buildCache();
+        usernameFailures = buildCache();
+        Gauge.builder("auth.login.throttle.keys", pairs, Cache::estimatedSize).tag("key", "username-ip").register(meterRegistry);
+        Gauge.builder("auth.login.throttle.keys", addresses, Cache::estimatedSize).tag("key", "ip").register(meterRegistry);
+        Gauge.builder("auth.login.throttle.keys", usernameFailures, Cache::estimatedSize).tag("key", "username").register(meterRegistry);
+    }
+    
+    private <K, V> Cache<K, V> buildCache() {
+        return Caffeine.newBuilder()
+            .maximumSize(maxKeys)
+            .expireAfterAccess(idleTimeout, TimeUnit.MILLISECONDS)
+            .build();
+    }
+    
+    /**
+     * Проверить и учесть попытку входа; при превышении лимита - LoginThrottledException
+     */
+    public void acquire(String username, String address) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.millis();
+        Pair pair = pair(username, address, now);
+        // Пауза проверяется первой: отклоненная ею попытка не расходует корзины
+        long retryAfter = pair.backoff().retryAfter(now);
+        if (retryAfter > 0) {
+            reject("backoff", retryAfter);
+        }
+        retryAfter = pair.attempts().tryAcquire(now, pairCapacity, pairRefillInterval);
+        if (retryAfter > 0) {
+            reject("username-ip", retryAfter);
+        }
+        retryAfter = addresses.get(address, key -> new Bucket(ipCapacity, now)).tryAcquire(now, ipCapacity, ipRefillInterval);
+        if (retryAfter > 0) {
+            // Попытка не состоялась: токен пары возвращается
+            pair.attempts().release(pairCapacity);
+            reject("ip", retryAfter);
+        }
+    }
+    
+    /**
+     * Отметить неудачный вход (неверный пароль или имя): после free-failures неудач подряд
+     * для пары (имя, IP) включается пауза, сразу - если исчерпан общий предел неудач по имени
+     */
+    public void onFailure(String username, String address) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.millis();
+        boolean usernameExhausted = usernameFailures.get(username, key -> new Bucket(usernameCapacity, now))
+            .tryAcquire(now, usernameCapacity, usernameRefillInterval) > 0;
+        pair(username, address, now).backoff()
+            .onFailure(now, usernameExhausted ? 0 : freeFailures, backoffBase, backoffMax);
+    }
+    
+    /**
+     * Отметить успешный вход: серия неудач для пары (имя, IP) сбрасывается
+     */
+    public void onSuccess(String username, String address) {
+        if (!enabled) {
+            return;
+        }
+        Pair pair = pairs.getIfPresent(new PairKey(username, address));
+        if (pair != null) {
+            pair.backoff().reset();
+        }
+    }
+    
+    private Pair pair(String username, String address, long now) {
+        return pairs.get(new PairKey(username, address), key -> new Pair(new Bucket(pairCapacity, now), new Backoff()));
+    }
+    
+    private void reject(String key, long retryAfter) {
+        meterRegistry.counter("auth.login.throttled", "key", key).increment();
+        throw new LoginThrottledException(retryAfter);
+    }
+    
+    /**
+     * Корзина токенов; неизменяемое состояние заменяется через CAS
+     */
+    private static final class Bucket {
+        
+        private record State(double tokens, long refilledAt) {
+        }
+        
+        private final AtomicReference<State> state;
+        
+        private Bucket(int capacity, long now) {
+            this.state = new AtomicReference<>(new State(capacity, now));
+        }
+        
+        /**
+         * Взять токен; 0 - попытка разрешена, иначе через сколько мс повторить
+         */
+        private long tryAcquire(long now, int capacity, long refillInterval) {
+            while (true) {
+                State current = state.get();
+                double tokens = Math.min(capacity, current.tokens() + (double) Math.max(0, now - current.refilledAt()) / refillInterval);
+                if (tokens < 1) {
+                    return Math.max(1, (long) Math.ceil((1 - tokens) * refillInterval));
+                }
+                State next = new State(tokens - 1, Math.max(now, current.refilledAt()));
+                if (state.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+        
+        /**
+         * Вернуть токен, взятый для несостоявшейся попытки
+         */
+        private void release(int capacity) {
+            state.updateAndGet(current -> new State(Math.min(capacity, current.tokens() + 1), current.refilledAt()));
+        }
+    }
+    
+    /**
+     * Серия неудачных входов и пауза после нее; неизменяемое состояние заменяется через CAS
+     */
+    private static final class Backoff {
+        
+        private record State(int failures, long blockedUntil) {
+        }
+        
+        private final AtomicReference<State> state = new AtomicReference<>(new State(0, 0L));
+        
+        /**
+         * 0 - попытка разрешена, иначе через сколько мс повторить
+         */
+        private long retryAfter(long now) {
+            return Math.max(0, state.get().blockedUntil() - now);
+        }
+        
+        private void reset() {
+            state.set(new State(0, 0L));
+        }
+        
+        private void onFailure(long now, int freeFailures, long backoffBase, long backoffMax) {
+            state.updateAndGet(current -> {
+                int failures = current.failures() + 1;
+                long blockedUntil = current.blockedUntil();
+                if (failures > freeFailures) {
+                    int exponent = Math.min(failures - freeFailures - 1, 30);
+                    blockedUntil = now + Math.min(backoffMax, backoffBase << exponent);
+                }
+                return new State(failures, blockedUntil);
+            });
+        }
+    }
+}
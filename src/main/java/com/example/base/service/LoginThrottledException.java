@@ -0,0 +1,18 @@
+package com.example.base.service;
+
+/**
+ * Слишком много попыток входа (ответ 429); повторить можно через retryAfter мс
+ */
+public class LoginThrottledException extends RuntimeException {
+    
+    private final long retryAfter;
+    
+    public LoginThrottledException(long retryAfter) {
+        super("Too many login attempts, please retry later");
+        this.retryAfter = retryAfter;
+    }
+    
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.base.service;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Таблица присутствия id пользователя -> время последней активности на примитивах.
+ *
+ * Открытая адресация с линейным пробированием по сегментам; ключ и значение лежат
+ * рядом в одном массиве long. Запись сегмента защищена StampedLock, чтение идет
+ * по оптимистичной метке без блокировок. Обновление времени, сдвинувшегося меньше
+ * чем на заданную гранулярность, пропускается без захвата блокировки записи,
+ * поэтому частые запросы одного пользователя не конкурируют за запись.
+ */
+class LongLongPresenceTable {
+    
+    /**
+     * Значение для отсутствующего ключа
+     */
+    static final long ABSENT = Long.MIN_VALUE;
+    
+    // Пустой слот; id пользователей начинаются с 1
+    private static final long EMPTY = 0L;
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+    
+    private final Segment[] segments;
+    private final int segmentShift;
+    
+    LongLongPresenceTable(int segmentCount, int initialCapacity) {
+        int count = Integer.highestOneBit(Math.max(1, segmentCount - 1) << 1);
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, initialCapacity / count - 1) << 1));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity);
+        }
+        segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+    
+    /**
+     * Получить время активности или ABSENT
+     */
+    long get(long key) {
+        Segment segment = segmentFor(key);
+        long stamp = segment.tryOptimisticRead();
+        long value = find(segment.table, key);
+        if (segment.validate(stamp)) {
+            return value;
+        }
+        stamp = segment.readLock();
+        try {
+            return find(segment.table, key);
+        } finally {
+            segment.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Записать время активности, если оно сдвинулось не меньше чем на granularity.
+     * Возвращает предыдущее значение или ABSENT, если ключа не было.
+     */
+    long touch(long key, long timestamp, long granularity) {
+        Segment segment = segmentFor(key);
+        
+        long stamp = segment.tryOptimisticRead();
+        long current = find(segment.table, key);
+        if (segment.validate(stamp) && current != ABSENT && timestamp - current < granularity) {
+            return current;
+        }
+        
+        stamp = segment.writeLock();
+        try {
+            return segment.put(key, timestamp, granularity);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Удалить ключ; возвращает предыдущее значение или ABSENT
+     */
+    long remove(long key) {
+        Segment segment = segmentFor(key);
+        long stamp = segment.writeLock();
+        try {
+            return segment.remove(key, ABSENT);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Удалить ключ, только если его значение не изменилось
+     */
+    boolean remove(long key, long expected) {
+        Segment segment = segmentFor(key);
+        long stamp = segment.writeLock();
+        try {
+            return segment.remove(key, expected) != ABSENT;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Обойти все записи (каждый сегмент под блокировкой чтения)
+     */
+    void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            long stamp = segment.readLock();
+            try {
+                long[] table = segment.table;
+                for (int i = 0; i < table.length; i += 2) {
+                    if (table[i] != EMPTY) {
+                        consumer.accept(table[i], table[i + 1]);
+                    }
+                }
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+    }
+    
+    private Segment segmentFor(long key) {
+        return segments[(int) (mix(key) >>> segmentShift)];
+    }
+    
+    private static long mix(long key) {
+        // Финализатор MurmurHash3
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+    
+    private static int slot(long key, int mask) {
+        return ((int) mix(key) & mask) << 1;
+    }
+    
+    // При оптимистичном чтении массив может меняться, поэтому число шагов ограничено
+    private static long find(long[] table, long key) {
+        int mask = (table.length >> 1) - 1;
+        int index = slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = table[index];
+            if (current == key) {
+                return table[index + 1];
+            }
+            if (current == EMPTY) {
+                return ABSENT;
+            }
+            index = (index + 2) & (table.length - 1);
+        }
+        return ABSENT;
+    }
+    
+    private static final class Segment extends StampedLock {
+        // Пары [ключ, значение]
+        private long[] table;
+        private int size;
+        
+        private Segment(int capacity) {
+            table = new long[capacity << 1];
+        }
+        
+        private long put(long key, long value, long granularity) {
+            int mask = (table.length >> 1) - 1;
+            int index = slot(key, mask);
+            while (table[index] != EMPTY) {
+                if (table[index] == key) {
+                    long previous = table[index + 1];
+                    // Повторная проверка под блокировкой: другой поток мог уже обновить время
+                    if (value - previous >= granularity) {
+                        table[index + 1] = value;
+                    }
+                    return previous;
+                }
+                index = (index + 2) & (table.length - 1);
+            }
+            table[index] = key;
+            table[index + 1] = value;
+            if (++size > (mask + 1) * 3 / 4) {
+                resize();
+            }
+            return ABSENT;
+        }
+        
+        private long remove(long key, long expected) {
+            int mask = (table.length >> 1) - 1;
+            int index = slot(key, mask);
+            while (table[index] != EMPTY) {
+                if (table[index] == key) {
+                    long previous = table[index + 1];
+                    if (expected != ABSENT && previous != expected) {
+                        return ABSENT;
+                    }
+                    shiftBack(index);
+                    size--;
+                    return previous;
+                }
+                index = (index + 2) & (table.length - 1);
+            }
+            return ABSENT;
+        }
+        
+        // Удаление со сдвигом цепочки назад, без надгробий
+        private void shiftBack(int hole) {
+            int mask = (table.length >> 1) - 1;
+            int index = hole;
+            while (true) {
+                index = (index + 2) & (table.length - 1);
+                long key = table[index];
+                if (key == EMPTY) {
+                    break;
+                }
+                int home = slot(key, mask);
+                // Элемент можно перенести в дыру, если его домашний слот не лежит между дырой и им
+                boolean movable = hole <= index
+                    ? home <= hole || home > index
+                    : home <= hole && home > index;
+                if (movable) {
+                    table[hole] = key;
+                    table[hole + 1] = table[index + 1];
+                    hole = index;
+                }
+            }
+            table[hole] = EMPTY;
+            table[hole + 1] = 0L;
+        }
+        
+        private void resize() {
+            long[] old = table;
+            long[] resized = new long[old.length << 1];
+            int mask = (resized.length >> 1) - 1;
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i] != EMPTY) {
+                    int index = slot(old[i], mask);
+                    while (resized[index] != EMPTY) {
+                        index = (index + 2) & (resized.length - 1);
+                    }
+                    resized[index] = old[i];
+                    resized[index + 1] = old[i + 1];
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.base.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Ротируемые refresh token в таблице refresh_tokens.
+ *
+ * Клиент получает случайное значение (256 бит), в БД хранится только его SHA-256:
+ * значение неугадываемое, поэтому медленный хэш вроде BCrypt не нужен. Каждый
+ * обмен помечает токен использованным и выдает следующий в той же цепочке (family).
+ * Повторное предъявление использованного токена означает, что им воспользовались
+ * двое - вся цепочка отзывается, и клиент должен войти заново.
+ */
+@Service
+public class RefreshTokenService {
+    
+    private static final int TOKEN_BYTES = 32;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Срок действия refresh token (мс); каждая ротация выдает токен на полный срок
+    @Value("${jwt.refresh.expiration:1209600000}")
+    private long expiration;
+    
+    // Истекшие строки удаляются пачками, чтобы не держать долгую блокировку
+    @Value("${jwt.refresh.purge-batch-size:1000}")
+    private int purgeBatchSize;
+    
+    private final SecureRandom random = new SecureRandom();
+    
+    /**
+     * Результат ротации: владелец, версия его токенов на момент входа, цепочка и новый refresh token
+     */
+    public record Rotation(long userId, String username, long tokenVersion, String familyId, String refreshToken) {
+    }
+    
+    private record Stored(long userId, String username, String familyId, long tokenVersion, long expiresAt, Long usedAt) {
+    }
+    
+    /**
+     * Выдать refresh token новой цепочки (при входе или регистрации)
+     */
+    public String issue(long userId, long tokenVersion) {
+        return insert(userId, UUID.randomUUID().toString(), tokenVersion);
+    }
+    
+    /**
+     * Обменять refresh token на следующий. Пусто, если токен неизвестен, истек
+     * или уже использован (в последнем случае цепочка отзывается)
+     */
+    @Transactional
+    public Optional<Rotation> rotate(String refreshToken) {
+        String hash = hash(refreshToken);
+        List<Stored> rows = jdbcTemplate.query(
+            "SELECT r.user_id, u.username, r.family_id, r.token_version, r.expires_at, r.used_at " +
+                "FROM refresh_tokens r JOIN users u ON u.id = r.user_id WHERE r.token_hash = ?",
+            (rs, rowNum) -> new Stored(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getLong(5),
+                rs.getObject(6) != null ? rs.getLong(6) : null),
+            hash);
+        if (rows.isEmpty()) {
+            return outcome("invalid");
+        }
+        Stored stored = rows.get(0);
+        long now = System.currentTimeMillis();
+        if (stored.expiresAt() <= now) {
+            return outcome("expired");
+        }
+        // Пометка условная: из двух одновременных обменов одного токена проходит один
+        if (stored.usedAt() != null
+                || jdbcTemplate.update("UPDATE refresh_tokens SET used_at = ? WHERE token_hash = ? AND used_at IS NULL", now, hash) == 0) {
+            revokeFamily(stored.familyId());
+            return outcome("reuse");
+        }
+        String next = insert(stored.userId(), stored.familyId(), stored.tokenVersion());
+        meterRegistry.counter("auth.refresh", "outcome", "success").increment();
+        return Optional.of(new Rotation(stored.userId(), stored.username(), stored.tokenVersion(), stored.familyId(), next));
+    }
+    
+    private Optional<Rotation> outcome(String outcome) {
+        meterRegistry.counter("auth.refresh", "outcome", outcome).increment();
+        return Optional.empty();
+    }
+    
+    /**
+     * Отозвать цепочку, к которой относится refresh token (выход)
+     */
+    public void revoke(String refreshToken) {
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE family_id IN " +
+            "(SELECT family_id FROM refresh_tokens WHERE token_hash = ?)", hash(refreshToken));
+    }
+    
+    public void revokeFamily(String familyId) {
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE family_id = ?", familyId);
+    }
+    
+    /**
+     * Удалить истекшие строки пачками по purge-batch-size, каждая в своей транзакции
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh.purge-interval:3600000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM refresh_tokens WHERE token_hash IN " +
+                "(SELECT token_hash FROM refresh_tokens WHERE expires_at <= ? LIMIT ?)", now, purgeBatchSize);
+        } while (deleted >= purgeBatchSize);
+    }
+    
+    private String insert(long userId, String familyId, long tokenVersion) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        jdbcTemplate.update("INSERT INTO refresh_tokens (token_hash, user_id, family_id, token_version, expires_at) " +
+            "VALUES (?, ?, ?, ?, ?)", hash(token), userId, familyId, tokenVersion, System.currentTimeMillis() + expiration);
+        return token;
+    }
+    
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.base.service;
+
+import com.example.base.model.Role;
+import com.example.base.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Справочник ролей в памяти. Роли создаются и загружаются один раз при старте
+ * (DataInitializer), после чего регистрация и изменение пользователей берут их
+ * отсюда без запросов к БД. Таблица ролей периодически перечитывается.
+ *
+ * Хранятся отсоединенные сущности: для связи user_roles Hibernate нужен только
+ * их id, а имя роли доступно без обращения к БД.
+ */
+@Service
+public class RoleRegistry {
+    
+    @Autowired
+    private RoleRepository roleRepository;
+    
+    private volatile Map<Role.RoleType, Role> roles = Collections.emptyMap();
+    
+    /**
+     * Создать недостающие роли и загрузить справочник
+     */
+    @Transactional
+    public void initialize() {
+        for (Role.RoleType type : Role.RoleType.values()) {
+            if (roleRepository.findByName(type).isEmpty()) {
+                Role role = new Role();
+                role.setName(type);
+                roleRepository.save(role);
+            }
+        }
+        refresh();
+    }
+    
+    /**
+     * Перечитать таблицу ролей
+     */
+    @Scheduled(initialDelayString = "${app.roles.refresh-interval:300000}",
+               fixedDelayString = "${app.roles.refresh-interval:300000}")
+    public void refresh() {
+        Map<Role.RoleType, Role> loaded = new EnumMap<>(Role.RoleType.class);
+        roleRepository.findAll().forEach(role -> loaded.put(role.getName(), role));
+        roles = Collections.unmodifiableMap(loaded);
+    }
+    
+    /**
+     * Получить роль по типу
+     */
+    public Role get(Role.RoleType type) {
+        Role role = roles.get(type);
+        if (role == null) {
+            // Роль могла появиться после последней загрузки
+            refresh();
+            role = roles.get(type);
+        }
+        if (role == null) {
+            throw new RuntimeException("Role not found: " + type);
+        }
+        return role;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.base.service;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Отозванные токены (по claim jti) до истечения их срока.
+ *
+ * Проверка в фильтре не обращается к БД: сначала фильтр Блума корзины, в которую
+ * попадает срок действия токена (корзины по jwt.revocation.bucket-interval), и только
+ * при положительном ответе - точное множество jti. Пока в корзине нет отозванных
+ * токенов, проверка сводится к одному поиску в карте корзин. Корзина удаляется
+ * целиком, когда истекли все попадающие в нее токены.
+ *
+ * Отзывы пишутся в таблицу revoked_tokens: при старте загружаются действующие, а
+ * отзывы с других узлов забираются раз в sync-interval.
+ */
+@Service
+// Таблица revoked_tokens создается Hibernate (ddl-auto) до первой загрузки отзывов
+@DependsOn("entityManagerFactory")
+public class TokenRevocationStore {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Ширина корзины по сроку действия токена (мс)
+    @Value("${jwt.revocation.bucket-interval:3600000}")
+    private long bucketInterval;
+    
+    // Ожидаемое количество отзывов в корзине и доля ложных срабатываний фильтра при нем
+    @Value("${jwt.revocation.expected-per-bucket:10000}")
+    private int expectedPerBucket;
+    
+    @Value("${jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    // Период загрузки отзывов, сделанных на других узлах (мс)
+    @Value("${jwt.revocation.sync-interval:5000}")
+    private long syncInterval;
+    
+    // Номер корзины (срок действия / bucket-interval) -> фильтр Блума
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    
+    // jti -> срок действия токена (мс)
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    
+    private int bits;
+    private int hashes;
+    
+    // Время отзыва последней загруженной записи
+    private long syncedUpTo;
+    
+    private Counter revokedHits;
+    private Counter falsePositives;
+    
+    @PostConstruct
+    public void init() {
+        // Оптимальные размер фильтра и число хэш-функций для заданной доли ложных срабатываний
+        bits = (int) Math.ceil(-expectedPerBucket * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        hashes = Math.max(1, (int) Math.round((double) bits / expectedPerBucket * Math.log(2)));
+        
+        revokedHits = meterRegistry.counter("jwt.revocation.checks", "result", "revoked");
+        falsePositives = meterRegistry.counter("jwt.revocation.checks", "result", "false-positive");
+        Gauge.builder("jwt.revocation.entries", revoked, Map::size).register(meterRegistry);
+        Gauge.builder("jwt.revocation.buckets", buckets, Map::size).register(meterRegistry);
+        
+        sync();
+    }
+    
+    /**
+     * Отозван ли токен. Токены без jti (выпущенные ранее) отзываются только сменой версии
+     */
+    public boolean isRevoked(Claims claims) {
+        String jti = claims.getId();
+        Date expiration = claims.getExpiration();
+        if (jti == null || expiration == null) {
+            return false;
+        }
+        long expiresAt = expiration.getTime();
+        Bucket bucket = buckets.get(Math.floorDiv(expiresAt, bucketInterval));
+        if (bucket == null || !bucket.mightContain(jti.hashCode(), hashes)) {
+            return false;
+        }
+        if (revoked.containsKey(jti)) {
+            revokedHits.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+    
+    /**
+     * Отозвать токен до истечения его срока
+     */
+    public void revoke(Claims claims) {
+        String jti = claims.getId();
+        if (jti == null || claims.getExpiration() == null) {
+            return;
+        }
+        long expiresAt = claims.getExpiration().getTime();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+                jti, expiresAt, System.currentTimeMillis());
+        } catch (DuplicateKeyException e) {
+            // Токен уже отозван
+        }
+        add(jti, expiresAt);
+    }
+    
+    private void add(String jti, long expiresAt) {
+        // Сначала точное множество: фильтр не должен указывать на отсутствующую запись
+        revoked.put(jti, expiresAt);
+        buckets.computeIfAbsent(Math.floorDiv(expiresAt, bucketInterval), key -> new Bucket(bits))
+            .add(jti.hashCode(), hashes);
+    }
+    
+    /**
+     * Загрузить отзывы с других узлов; окно перекрывается на период, чтобы не
+     * пропустить записи при расхождении часов узлов
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:5000}")
+    public synchronized void sync() {
+        long now = System.currentTimeMillis();
+        long from = Math.max(0, syncedUpTo - syncInterval);
+        jdbcTemplate.query("SELECT jti, expires_at, revoked_at FROM revoked_tokens WHERE revoked_at >= ? AND expires_at > ?",
+            rs -> {
+                add(rs.getString(1), rs.getLong(2));
+                syncedUpTo = Math.max(syncedUpTo, rs.getLong(3));
+            }, from, now);
+    }
+    
+    /**
+     * Удалить истекшие записи: корзины целиком, точное множество и строки таблицы
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:600000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        // Корзина истекла, когда истек последний срок действия, который в нее попадает
+        buckets.keySet().removeIf(index -> (index + 1) * bucketInterval <= now);
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        jdbcTemplate.update("DELETE FROM revoked_tokens WHERE expires_at <= ?", now);
+    }
+    
+    /**
+     * Фильтр Блума одной корзины: двойное хэширование от String.hashCode (кэшируется
+     * в строке jti, а claims токена берутся из кэша, поэтому хэш не пересчитывается)
+     */
+    private static final class Bucket {
+        
+        private final AtomicLongArray words;
+        private final int bits;
+        
+        private Bucket(int bits) {
+            this.words = new AtomicLongArray((bits + 63) >>> 6);
+            this.bits = words.length() << 6;
+        }
+        
+        private void add(int hash, int hashes) {
+            int h1 = hash;
+            int h2 = mix(hash);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                long mask = 1L << bit;
+                words.getAndAccumulate(bit >>> 6, mask, (word, value) -> word | value);
+            }
+        }
+        
+        private boolean mightContain(int hash, int hashes) {
+            int h1 = hash;
+            int h2 = mix(hash);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        // Второй хэш - перемешивание первого (финализатор MurmurHash3), нечетный
+        private static int mix(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            hash ^= hash >>> 16;
+            return hash | 1;
+        }
+    }
+}
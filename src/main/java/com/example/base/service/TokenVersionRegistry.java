@@ -0,0 +1,76 @@
+package com.example.base.service;
+
+import com.example.base.event.UserChangedEvent;
+import com.example.base.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таблица актуальных версий токенов: username -> (id пользователя, версия).
+ * Заполняется лениво из БД и сбрасывается после фиксации изменений пользователя,
+ * поэтому проверка отзыва токена в фильтре обходится без запроса к БД.
+ */
+@Service
+public class TokenVersionRegistry {
+    
+    // Отметка для несуществующего (удаленного или переименованного) пользователя
+    private static final TokenState MISSING = new TokenState(-1L, -1L);
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${jwt.stateless.max-size:100000}")
+    private long maxSize;
+    
+    // Время жизни записи ограничивает задержку распространения изменений с других узлов
+    @Value("${jwt.stateless.refresh-interval:60000}")
+    private long refreshInterval;
+    
+    private LoadingCache<String, TokenState> versions;
+    
+    private record TokenState(long userId, long tokenVersion) {
+    }
+    
+    @PostConstruct
+    public void init() {
+        versions = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(refreshInterval, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .build(username -> userRepository.findTokenStateByUsername(username)
+                .map(state -> new TokenState(state.getId(), state.getTokenVersion()))
+                .orElse(MISSING));
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "jwt.token-versions");
+    }
+    
+    /**
+     * Проверить, что токен выдан текущему владельцу имени и не отозван сменой версии
+     */
+    public boolean isCurrent(String username, long userId, long tokenVersion) {
+        TokenState state = versions.get(username);
+        return state != MISSING && state.userId() == userId && state.tokenVersion() == tokenVersion;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getPreviousUsername() != null) {
+            versions.invalidate(event.getPreviousUsername());
+        }
+        if (event.getUsername() != null) {
+            versions.invalidate(event.getUsername());
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.base.service;
+
+import com.example.base.config.OffloadingPasswordEncoder;
+import com.example.base.dto.BulkImportResponse;
+import com.example.base.dto.BulkUserResult;
+import com.example.base.dto.RegisterRequest;
+import com.example.base.event.UserChangedEvent;
+import com.example.base.model.Role;
+import com.example.base.model.User;
+import com.example.base.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Массовое создание пользователей (/api/admin/users/bulk).
+ *
+ * Входные данные (JSON-массив или NDJSON) разбираются потоком и обрабатываются
+ * пачками по app.users.bulk.chunk-size строк. Для пачки занятые имена и email
+ * проверяются одним запросом, пароли хэшируются параллельно на ограниченном пуле,
+ * id выделяются блоками из последовательности пользователей, а пользователи и их
+ * роли вставляются пакетами JDBC в одной транзакции. Если пакет
+ * не прошел (например, имя заняли параллельно), строки пачки вставляются по одной,
+ * и ошибка попадает в результат только своей строки.
+ *
+ * Для PostgreSQL в URL подключения стоит включить reWriteBatchedInserts=true:
+ * драйвер тогда склеивает пакет в многострочные INSERT.
+ */
+@Service
+public class UserBulkImportService {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserBulkImportService.class);
+    
+    private static final String INSERT_USER_SQL =
+        "INSERT INTO users (id, username, password, email, token_version) VALUES (?, ?, ?, ?, 0)";
+    
+    private static final String INSERT_USER_ROLE_SQL =
+        "INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)";
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private RoleRegistry roleRegistry;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Value("${app.users.bulk.chunk-size:1000}")
+    private int chunkSize;
+    
+    // Потоки хэширования паролей (0 - по числу процессоров)
+    @Value("${app.users.bulk.hash-threads:0}")
+    private int hashThreads;
+    
+    // Максимальное количество строк в одном запросе
+    @Value("${app.users.bulk.max-rows:100000}")
+    private int maxRows;
+    
+    private ExecutorService hashExecutor;
+    
+    private TransactionTemplate transaction;
+    
+    // Запрос следующего значения последовательности id пользователей в диалекте БД
+    private String nextIdSql;
+    
+    /**
+     * Строка входных данных, прошедшая проверку
+     */
+    private static final class Row {
+        private final int index;
+        private final RegisterRequest request;
+        private String passwordHash;
+        private Long id;
+        
+        private Row(int index, RegisterRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        // Очередь ограничена пачкой; при переполнении хэширует вызывающий поток
+        hashExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(chunkSize), Thread.ofPlatform().name("bulk-hash-", 0).daemon().factory(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        transaction = new TransactionTemplate(transactionManager);
+        // Параллельность ограничена своим пулом: общий пул хэширования входов не занимаем
+        if (passwordEncoder instanceof OffloadingPasswordEncoder offloading) {
+            passwordEncoder = offloading.getDelegate();
+        }
+        nextIdSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()
+            .getSequenceSupport().getSequenceNextValString(User.ID_SEQUENCE);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+    
+    /**
+     * Создать пользователей из потока RegisterRequest (JSON-массив или NDJSON)
+     */
+    public BulkImportResponse importUsers(InputStream input) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<BulkUserResult> results = new ArrayList<>();
+        // Имена и email, уже встретившиеся во входных данных
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        
+        try (MappingIterator<RegisterRequest> requests = objectMapper.readerFor(RegisterRequest.class).readValues(input)) {
+            int index = 0;
+            while (true) {
+                RegisterRequest request;
+                try {
+                    if (!requests.hasNextValue()) {
+                        break;
+                    }
+                    request = requests.nextValue();
+                } catch (JsonProcessingException e) {
+                    // После ошибки разбора продолжить нельзя: оставшиеся строки не обрабатываются
+                    results.add(BulkUserResult.error(index, null, "Malformed input: " + e.getOriginalMessage()));
+                    break;
+                }
+                if (index >= maxRows) {
+                    results.add(BulkUserResult.error(index, null, "Too many rows, limit is " + maxRows));
+                    break;
+                }
+                
+                String error = validate(request, usernames, emails);
+                if (error != null) {
+                    results.add(BulkUserResult.error(index, request.getUsername(), error));
+                } else {
+                    chunk.add(new Row(index, request));
+                    if (chunk.size() == chunkSize) {
+                        importChunk(chunk, results);
+                        chunk.clear();
+                    }
+                }
+                index++;
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, results);
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("users.bulk"));
+        }
+        
+        results.sort(Comparator.comparingInt(BulkUserResult::getIndex));
+        int created = (int) results.stream().filter(result -> result.getId() != null).count();
+        meterRegistry.counter("users.bulk.rows", "outcome", "success").increment(created);
+        meterRegistry.counter("users.bulk.rows", "outcome", "error").increment(results.size() - created);
+        return new BulkImportResponse(created, results.size() - created, results);
+    }
+    
+    private String validate(RegisterRequest request, Set<String> usernames, Set<String> emails) {
+        Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (!usernames.add(request.getUsername())) {
+            return "Duplicate username in batch";
+        }
+        if (!emails.add(request.getEmail())) {
+            usernames.remove(request.getUsername());
+            return "Duplicate email in batch";
+        }
+        return null;
+    }
+    
+    private void importChunk(List<Row> chunk, List<BulkUserResult> results) {
+        // Занятые имена и email: одна выборка на пачку вместо двух запросов на строку
+        List<String> chunkUsernames = chunk.stream().map(row -> row.request.getUsername()).toList();
+        List<String> chunkEmails = chunk.stream().map(row -> row.request.getEmail()).toList();
+        Set<String> takenUsernames = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        for (Object[] taken : userRepository.findUsernamesAndEmails(chunkUsernames, chunkEmails)) {
+            takenUsernames.add((String) taken[0]);
+            takenEmails.add((String) taken[1]);
+        }
+        
+        List<Row> accepted = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (takenUsernames.contains(row.request.getUsername())) {
+                results.add(BulkUserResult.error(row.index, row.request.getUsername(), "Username already exists"));
+            } else if (takenEmails.contains(row.request.getEmail())) {
+                results.add(BulkUserResult.error(row.index, row.request.getUsername(), "Email already exists"));
+            } else {
+                accepted.add(row);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        
+        hashPasswords(accepted);
+        assignIds(accepted);
+        
+        try {
+            transaction.executeWithoutResult(status -> insert(accepted));
+            accepted.forEach(row -> results.add(BulkUserResult.success(row.index, row.request.getUsername(), row.id)));
+        } catch (DataAccessException e) {
+            // Пакет откатился целиком: вставляем строки по одной, чтобы найти проблемные
+            for (Row row : accepted) {
+                try {
+                    transaction.executeWithoutResult(status -> insert(List.of(row)));
+                    results.add(BulkUserResult.success(row.index, row.request.getUsername(), row.id));
+                } catch (DataAccessException rowError) {
+                    results.add(BulkUserResult.error(row.index, row.request.getUsername(), rowErrorMessage(row, rowError)));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Сообщение об ошибке строки без текста SQL и драйвера: нарушение уникальности
+     * (имя или email заняты параллельной вставкой) определяется повторной проверкой,
+     * остальное пишется в лог
+     */
+    private String rowErrorMessage(Row row, DataAccessException error) {
+        if (error instanceof DataIntegrityViolationException) {
+            if (userRepository.existsByUsername(row.request.getUsername())) {
+                return "Username already exists";
+            }
+            if (userRepository.existsByEmail(row.request.getEmail())) {
+                return "Email already exists";
+            }
+        }
+        log.warn("Bulk import failed to insert row {}", row.index, error);
+        return "Could not create user";
+    }
+    
+    /**
+     * Посчитать хэши паролей пачки параллельно
+     */
+    private void hashPasswords(List<Row> rows) {
+        List<Future<?>> hashes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            hashes.add(hashExecutor.submit(() -> {
+                row.passwordHash = passwordEncoder.encode(row.request.getPassword());
+            }));
+        }
+        try {
+            for (Future<?> hash : hashes) {
+                hash.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Password hashing interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Назначить строкам id из последовательности пользователей: один запрос на блок
+     * из User.ID_ALLOCATION_SIZE id, как это делает Hibernate (pooled-lo)
+     */
+    private void assignIds(List<Row> rows) {
+        long next = 0;
+        int left = 0;
+        for (Row row : rows) {
+            if (left == 0) {
+                next = jdbcTemplate.queryForObject(nextIdSql, Long.class);
+                left = User.ID_ALLOCATION_SIZE;
+            }
+            row.id = next++;
+            left--;
+        }
+    }
+    
+    /**
+     * Вставить пользователей и их роли пакетами JDBC (в текущей транзакции)
+     */
+    private void insert(List<Row> rows) {
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, rows, chunkSize, (ps, row) -> {
+            ps.setLong(1, row.id);
+            ps.setString(2, row.request.getUsername());
+            ps.setString(3, row.passwordHash);
+            ps.setString(4, row.request.getEmail());
+        });
+        
+        jdbcTemplate.batchUpdate(INSERT_USER_ROLE_SQL, rows, chunkSize, (ps, row) -> {
+            Role.RoleType type = row.request.isAdmin() ? Role.RoleType.ADMIN : Role.RoleType.USER;
+            ps.setLong(1, row.id);
+            ps.setLong(2, roleRegistry.get(type).getId());
+        });
+        
+        rows.forEach(row -> eventPublisher.publishEvent(UserChangedEvent.created(row.id, row.request.getUsername())));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.base.service;
+
+import com.example.base.event.UserChangedEvent;
+import com.example.base.dto.UserTokenState;
+import com.example.base.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный кэш id пользователей по имени (Caffeine, вытеснение W-TinyLFU)
+ * для отметки активности по токенам без id (ActiveUserService). Запись
+ * сбрасывается после фиксации транзакции, изменившей пользователя.
+ *
+ * Другие данные пользователя здесь не хранятся: сброс локален для узла, поэтому
+ * аутентификация (UserDetailsServiceImpl) и /api/user/me (UserService) читают
+ * их из БД.
+ */
+@Service
+public class UserCache {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.user-cache.max-size:10000}")
+    private long maxSize;
+    
+    @Value("${app.user-cache.ttl:300000}")
+    private long ttl;
+    
+    private LoadingCache<String, Long> ids;
+    
+    @PostConstruct
+    public void init() {
+        // Проекция без загрузки сущности и ролей
+        ids = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .build(username -> userRepository.findTokenStateByUsername(username)
+                .map(UserTokenState::getId)
+                .orElse(null));
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, ids, "users");
+    }
+    
+    /**
+     * Получить id пользователя по имени (из кэша или из БД)
+     */
+    public Optional<Long> findId(String username) {
+        return Optional.ofNullable(ids.get(username));
+    }
+    
+    /**
+     * Удалить пользователя из кэша
+     */
+    public void invalidate(String username) {
+        ids.invalidate(username);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getPreviousUsername() != null) {
+            ids.invalidate(event.getPreviousUsername());
+        }
+        if (event.getUsername() != null) {
+            ids.invalidate(event.getUsername());
+        }
+    }
+}
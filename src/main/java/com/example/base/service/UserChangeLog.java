@@ -0,0 +1,212 @@
+package com.example.base.service;
+
+import com.example.base.dto.UserChanges;
+import com.example.base.dto.UserInfo;
+import com.example.base.event.UserChangedEvent;
+import com.example.base.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Журнал изменений пользователей для /api/user/changes.
+ *
+ * Каждая транзакция, изменившая пользователей, перед фиксацией получает номер из
+ * счетчика user_change_counter и проставляет его в users.change_seq; удаленные
+ * пользователи оставляют отметку в user_tombstones. Строка счетчика заблокирована
+ * до фиксации, поэтому номера фиксируются по порядку: клиент, получивший изменения
+ * до номера N, не пропустит транзакцию с меньшим номером, зафиксированную позже.
+ * Все изменения одной транзакции (например, пачки массовой загрузки) получают один
+ * номер и записываются пакетами JDBC.
+ *
+ * Цена порядка: пока строка счетчика заблокирована, транзакции, изменяющие
+ * пользователей, на всех узлах ждут друг друга. Блокировка берется в beforeCommit,
+ * поэтому очередь охватывает только проставление номера (для пачки массовой
+ * загрузки - UPDATE всех ее строк) и фиксацию, а не всю транзакцию; время
+ * удержания растет с размером пачки (app.users.bulk.chunk-size). Последовательность
+ * с отметкой последнего зафиксированного номера сняла бы очередь, но требует
+ * отслеживать незавершенные транзакции всех узлов; при нынешней частоте записей
+ * пользователей это не окупается.
+ */
+@Service
+// Таблицы создаются Hibernate (ddl-auto) до создания строки счетчика
+@DependsOn("entityManagerFactory")
+public class UserChangeLog {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private TransactionTemplate transaction;
+    
+    // Сколько хранятся отметки об удалении (мс); клиент, отставший сильнее, загружает список заново
+    @Value("${app.users.changes.tombstone-retention:2592000000}")
+    private long tombstoneRetention;
+    
+    @PostConstruct
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_change_counter WHERE id = 1", Long.class);
+        if (rows != null && rows == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO user_change_counter (id, seq, purged_seq) VALUES (1, 0, 0)");
+            } catch (DuplicateKeyException e) {
+                // Строку создал другой узел
+            }
+        }
+    }
+    
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Событие вне транзакции: номер получаем и проставляем в своей транзакции,
+            // иначе между увеличением и чтением счетчика вклинился бы другой узел
+            Pending pending = new Pending();
+            pending.add(event);
+            transaction.executeWithoutResult(status -> write(pending));
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(event);
+    }
+    
+    /**
+     * Текущий номер: изменения до него включительно уже зафиксированы
+     */
+    public long currentVersion() {
+        return jdbcTemplate.queryForObject("SELECT seq FROM user_change_counter WHERE id = 1", Long.class);
+    }
+    
+    /**
+     * Изменения после номера since, не больше limit пользователей и limit удалений.
+     * При большем количестве, устаревшем since или since из будущего - признак reset
+     */
+    public UserChanges changesSince(long since, int limit) {
+        // Номер читается до изменений: зафиксированное позже попадет в следующий запрос
+        long[] counter = jdbcTemplate.queryForObject("SELECT seq, purged_seq FROM user_change_counter WHERE id = 1",
+            (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+        long upTo = counter[0];
+        if (since < counter[1] || since > upTo) {
+            return UserChanges.reset(upTo);
+        }
+        if (since == upTo) {
+            return new UserChanges(upTo, List.of(), List.of(), false);
+        }
+        
+        List<UserInfo> users = userRepository.findUserInfoChangedBetween(since, upTo, Limit.of(limit + 1));
+        List<Long> deleted = jdbcTemplate.queryForList(
+            "SELECT user_id FROM user_tombstones WHERE change_seq > ? AND change_seq <= ? ORDER BY change_seq LIMIT ?",
+            Long.class, since, upTo, limit + 1);
+        if (users.size() > limit || deleted.size() > limit) {
+            return UserChanges.reset(upTo);
+        }
+        return new UserChanges(upTo, users, deleted, false);
+    }
+    
+    /**
+     * Удалить устаревшие отметки об удалении; клиенты с since до удаленных получат reset
+     */
+    @Scheduled(fixedDelayString = "${app.users.changes.purge-interval:3600000}")
+    @Transactional
+    public void purge() {
+        Long purgedSeq = jdbcTemplate.queryForObject("SELECT MAX(change_seq) FROM user_tombstones WHERE deleted_at <= ?",
+            Long.class, System.currentTimeMillis() - tombstoneRetention);
+        if (purgedSeq == null) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE user_change_counter SET purged_seq = ? WHERE id = 1 AND purged_seq < ?", purgedSeq, purgedSeq);
+        jdbcTemplate.update("DELETE FROM user_tombstones WHERE change_seq <= ?", purgedSeq);
+    }
+    
+    // Вызывается только внутри транзакции
+    private void write(Pending pending) {
+        // Увеличение блокирует строку счетчика до фиксации транзакции, поэтому чтение
+        // ниже возвращает номер этой транзакции
+        jdbcTemplate.update("UPDATE user_change_counter SET seq = seq + 1 WHERE id = 1");
+        long seq = currentVersion();
+        
+        List<Long> changed = new ArrayList<>(pending.changed);
+        changed.removeAll(pending.deleted);
+        if (!changed.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE users SET change_seq = ? WHERE id = ?", changed, changed.size(),
+                (ps, id) -> {
+                    ps.setLong(1, seq);
+                    ps.setLong(2, id);
+                });
+        }
+        if (!pending.deleted.isEmpty()) {
+            long now = System.currentTimeMillis();
+            jdbcTemplate.batchUpdate("INSERT INTO user_tombstones (user_id, change_seq, deleted_at) VALUES (?, ?, ?)",
+                pending.deleted, pending.deleted.size(),
+                (ps, id) -> {
+                    ps.setLong(1, id);
+                    ps.setLong(2, seq);
+                    ps.setLong(3, now);
+                });
+        }
+    }
+    
+    /**
+     * Изменения текущей транзакции; записываются перед ее фиксацией
+     */
+    private final class Pending implements TransactionSynchronization {
+        
+        private final Set<Long> changed = new LinkedHashSet<>();
+        private final Set<Long> deleted = new LinkedHashSet<>();
+        
+        private void add(UserChangedEvent event) {
+            if (event.getType() == UserChangedEvent.Type.DELETED) {
+                deleted.add(event.getUserId());
+            } else {
+                changed.add(event.getUserId());
+            }
+        }
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // Строки пользователей, сохраненные через JPA, должны быть в БД до проставления номера
+            entityManager.flush();
+            write(this);
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UserChangeLog.this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.base.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Версия справочника пользователей для условных GET (ETag).
+ *
+ * Берется из общего счетчика изменений user_change_counter (UserChangeLog): номер
+ * растет с каждой транзакцией, изменившей пользователей, на любом узле и виден
+ * после ее фиксации. Поэтому ETag одинаков на всех узлах и меняется сразу после
+ * изменения. Last-Modified не выдается: время изменения счетчик не хранит.
+ */
+@Service
+public class UserDirectoryVersion {
+    
+    @Autowired
+    private UserChangeLog userChangeLog;
+    
+    /**
+     * Слабый ETag текущей версии для варианта ответа (пользователь, адрес и параметры запроса)
+     */
+    public String etag(String variant) {
+        return "W/\"" + userChangeLog.currentVersion() + "-" + Integer.toHexString(variant.hashCode()) + "\"";
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.base.service;
+
+import com.example.base.dto.UserInfo;
+import com.example.base.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка всех пользователей.
+ *
+ * Строки читаются курсором в read-only транзакции и пишутся в ответ по одной,
+ * поэтому память не зависит от количества пользователей: запрос проецирует строки
+ * сразу в UserInfo, и в контексте постоянства ничего не накапливается.
+ *
+ * Метрики: users.export.rows и users.export.bytes (скорость - rate счетчиков),
+ * users.export - длительность выгрузки; все с тегом format.
+ */
+@Service
+public class UserExportService {
+    
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+        
+        private final String contentType;
+        private final String extension;
+        
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+    }
+    
+    // Буфер между курсором и ответом
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    /**
+     * Выгрузить всех пользователей в поток в заданном формате
+     */
+    public void export(Format format, OutputStream outputStream) throws IOException {
+        String tag = format.getExtension();
+        Counter rows = meterRegistry.counter("users.export.rows", "format", tag);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        
+        CountingOutputStream counting = new CountingOutputStream(outputStream);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (format == Format.CSV) {
+                writer.write("id,username,email,isAdmin\n");
+            }
+            ObjectWriter json = objectMapper.writerFor(UserInfo.class);
+            
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> {
+                try (Stream<UserInfo> users = userRepository.streamAllUserInfo()) {
+                    users.forEach(user -> {
+                        try {
+                            if (format == Format.CSV) {
+                                writeCsv(writer, user);
+                            } else {
+                                writer.write(json.writeValueAsString(user));
+                                writer.write('\n');
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows.increment();
+                    });
+                }
+            });
+            outcome = "success";
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение
+            throw e.getCause();
+        } finally {
+            meterRegistry.counter("users.export.bytes", "format", tag).increment(counting.getCount());
+            sample.stop(meterRegistry.timer("users.export", "format", tag, "outcome", outcome));
+        }
+    }
+    
+    private void writeCsv(Writer writer, UserInfo user) throws IOException {
+        writer.write(String.valueOf(user.getId()));
+        writer.write(',');
+        writer.write(csvField(user.getUsername()));
+        writer.write(',');
+        writer.write(csvField(user.getEmail()));
+        writer.write(',');
+        writer.write(String.valueOf(user.isAdmin()));
+        writer.write('\n');
+    }
+    
+    // Поле в кавычках, если содержит разделитель, кавычку или перевод строки (RFC 4180)
+    private String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    /**
+     * Считает байты, записанные в ответ
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+        
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        
+        private long getCount() {
+            return count;
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.example.base.service;
 
 import com.example.base.dto.UpdateUserRequest;
 import com.example.base.dto.UserInfo;
+import com.example.base.dto.UserPage;
+import com.example.base.event.UserChangedEvent;
 import com.example.base.model.Role;
 import com.example.base.model.User;
-import com.example.base.repository.RoleRepository;
 import com.example.base.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -16,7 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -25,35 +27,63 @@ public class UserService {
     private UserRepository userRepository;
     
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
     
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public UserInfo getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
         
-        User user = userRepository.findByUsername(username)
+        // Из БД, а не из UserCache: ответ кэшируется клиентом под ETag общего счетчика,
+        // и устаревшая запись кэша этого узла осталась бы у клиента до следующего изменения
+        return userRepository.findUserInfoByUsername(username)
             .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+    
+    /**
+     * Получить страницу пользователей по ключу id.
+     * cursor - id последнего пользователя предыдущей страницы (null - первая страница);
+     * фильтры - префиксы имени и email без учета регистра; withTotal - посчитать общее количество.
+     */
+    public UserPage getUsersPage(Long cursor, int size, boolean ascending, String usernamePrefix, String emailPrefix,
+                                 boolean withTotal) {
+        String username = toPrefixPattern(usernamePrefix);
+        String email = toPrefixPattern(emailPrefix);
+        
+        // Запрашиваем на одну запись больше, чтобы узнать, есть ли следующая страница
+        Limit limit = Limit.of(size + 1);
+        List<UserInfo> users = ascending
+            ? userRepository.findUserInfoPageAfter(cursor != null ? cursor : Long.MIN_VALUE, username, email, limit)
+            : userRepository.findUserInfoPageBefore(cursor != null ? cursor : Long.MAX_VALUE, username, email, limit);
+        
+        Long nextCursor = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            nextCursor = users.get(size - 1).getId();
+        }
         
-        return new UserInfo(
-            user.getId(),
-            user.getUsername(),
-            user.getEmail(),
-            user.isAdmin()
-        );
+        // Количество - отдельный проход по таблице, поэтому только по запросу клиента и только
+        // для первой страницы: следующие страницы его не меняют
+        Long total = withTotal && cursor == null ? userRepository.countByPrefix(username, email) : null;
+        return new UserPage(users, nextCursor, total);
     }
     
-    public List<UserInfo> getAllUsers() {
-        return userRepository.findAll().stream()
-            .map(user -> new UserInfo(
-                user.getId(),
-                user.getUsername(),
-                user.getEmail(),
-                user.isAdmin()
-            ))
-            .collect(Collectors.toList());
+    /**
+     * Шаблон LIKE для поиска по префиксу; спецсимволы LIKE экранируются
+     */
+    private String toPrefixPattern(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        return prefix.trim().toLowerCase()
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_") + "%";
     }
     
     @Transactional
@@ -78,21 +108,31 @@ public class UserService {
             }
         }
         
+        String previousUsername = user.getUsername();
+        boolean credentialsChanged = !previousUsername.equals(request.getUsername());
+        
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
         
         // Обновляем пароль только если он указан
         if (request.getPassword() != null && !request.getPassword().isEmpty()) {
             user.setPassword(passwordEncoder.encode(request.getPassword()));
+            credentialsChanged = true;
+        }
+        
+        // Смена имени или пароля отзывает ранее выданные токены
+        if (credentialsChanged) {
+            user.setTokenVersion(user.getTokenVersion() + 1);
         }
         
         // Роль не изменяем при обновлении текущего пользователя
         userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.updated(user.getId(), previousUsername, user.getUsername()));
     }
     
     @Transactional
     public void updateUser(Long userId, UpdateUserRequest request) {
-        User user = userRepository.findById(userId)
+        User user = userRepository.findWithRolesById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Проверка уникальности username (если изменился)
@@ -109,37 +149,38 @@ public class UserService {
             }
         }
         
+        String previousUsername = user.getUsername();
+        boolean credentialsChanged = !previousUsername.equals(request.getUsername())
+            || user.isAdmin() != request.isAdmin();
+        
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
         
         // Обновляем пароль только если он указан
         if (request.getPassword() != null && !request.getPassword().isEmpty()) {
             user.setPassword(passwordEncoder.encode(request.getPassword()));
+            credentialsChanged = true;
+        }
+        
+        // Смена имени, пароля или роли отзывает ранее выданные токены
+        if (credentialsChanged) {
+            user.setTokenVersion(user.getTokenVersion() + 1);
         }
         
         // Обновляем роли - сначала очищаем старые
         user.getRoles().clear();
         Set<Role> roles = new HashSet<>();
         if (request.isAdmin()) {
-            Role adminRole = roleRepository.findByName(Role.RoleType.ADMIN)
-                .orElseGet(() -> {
-                    Role newRole = new Role();
-                    newRole.setName(Role.RoleType.ADMIN);
-                    return roleRepository.save(newRole);
-                });
+            Role adminRole = roleRegistry.get(Role.RoleType.ADMIN);
             roles.add(adminRole);
         } else {
-            Role userRole = roleRepository.findByName(Role.RoleType.USER)
-                .orElseGet(() -> {
-                    Role newRole = new Role();
-                    newRole.setName(Role.RoleType.USER);
-                    return roleRepository.save(newRole);
-                });
+            Role userRole = roleRegistry.get(Role.RoleType.USER);
             roles.add(userRole);
         }
         user.setRoles(roles);
         
         userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.updated(user.getId(), previousUsername, user.getUsername()));
     }
     
     @Transactional
@@ -155,6 +196,7 @@ public class UserService {
         }
         
         userRepository.delete(user);
+        eventPublisher.publishEvent(UserChangedEvent.deleted(user.getId(), user.getUsername()));
     }
 }
 
@@ -2,12 +2,25 @@ const API_BASE_URL = '/api';
 
 let currentToken = null;
 let currentUser = null;
-let allUsers = []; // Храним список всех пользователей для сортировки
+let allUsers = []; // Храним загруженных пользователей для сортировки
+let usersNextCursor = null; // Курсор следующей страницы пользователей (null - страниц больше нет)
+let usersTotal = null; // Общее количество пользователей с учетом фильтра
+let usersVersion = null; // Номер изменений, на котором загружен список (для /user/changes)
+let usersFilter = ''; // Фильтр по началу имени пользователя
+let usersFilterTimer = null; // Таймер задержки поиска
+const USERS_PAGE_SIZE = 50; // Размер страницы списка пользователей
 let currentSort = { column: 'username', direction: 'desc' }; // Текущая сортировка (по умолчанию по имени по убыванию)
-let activeUsersUpdateInterval = null; // Интервал для обновления списка активных пользователей
+let activeUsersStream = null; // Подключение к потоку изменений списка активных пользователей (AbortController)
+let activeUsersReconnectTimer = null; // Таймер переподключения к потоку
+let activeUsers = new Map(); // Активные пользователи по id, собранные из snapshot и delta
+const ACTIVE_USERS_RECONNECT_DELAY = 5000; // Задержка переподключения к потоку (мс)
+const ACTIVE_USERS_PAGE_SIZE = 100; // Размер страницы списка активных пользователей
 let lastActivityTime = null; // Время последней активности пользователя
 let inactivityCheckInterval = null; // Интервал для проверки неактивности
 const INACTIVITY_TIMEOUT = 30 * 60 * 1000; // 30 минут в миллисекундах
+let refreshInFlight = null; // Текущий обмен refresh token (общий для одновременных запросов)
+let conditionalCache = new Map(); // Ответы GET с ETag по адресу: { etag, body, headers }
+const CONDITIONAL_CACHE_SIZE = 50; // Максимальное количество сохраненных ответов
 
 // Очистить сообщения об ошибках
 function clearErrors() {
@@ -43,6 +56,7 @@ async function login() {
                 isAdmin: data.isAdmin
             };
             localStorage.setItem('token', data.token);
+            localStorage.setItem('refreshToken', data.refreshToken);
             localStorage.setItem('username', data.username);
             localStorage.setItem('isAdmin', data.isAdmin);
             showWorkspace();
@@ -85,6 +99,7 @@ async function register() {
                 isAdmin: data.isAdmin
             };
             localStorage.setItem('token', data.token);
+            localStorage.setItem('refreshToken', data.refreshToken);
             localStorage.setItem('username', data.username);
             localStorage.setItem('isAdmin', data.isAdmin);
             showWorkspace();
@@ -97,6 +112,94 @@ async function register() {
     }
 }
 
+// Обменять refresh token на новый access token. Одновременные запросы с истекшим
+// токеном ждут один обмен: повторное предъявление того же refresh token сервер
+// считает кражей и отзывает всю цепочку
+function refreshAccessToken() {
+    if (!refreshInFlight) {
+        refreshInFlight = doRefreshAccessToken().finally(() => {
+            refreshInFlight = null;
+        });
+    }
+    return refreshInFlight;
+}
+
+async function doRefreshAccessToken() {
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (!refreshToken) return false;
+    
+    try {
+        const response = await fetch(`${API_BASE_URL}/auth/refresh`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json'
+            },
+            body: JSON.stringify({ refreshToken })
+        });
+        if (!response.ok) {
+            return false;
+        }
+        const data = await response.json();
+        currentToken = data.token;
+        localStorage.setItem('token', data.token);
+        localStorage.setItem('refreshToken', data.refreshToken);
+        return true;
+    } catch (error) {
+        console.error('Refresh token error:', error);
+        return false;
+    }
+}
+
+// Запрос к API с текущим access token; на 401 токен обновляется и запрос повторяется один раз.
+// Если обновить токен не удалось, сеанс завершается
+async function apiFetch(url, options = {}) {
+    const send = () => fetch(url, {
+        ...options,
+        headers: {
+            ...options.headers,
+            'Authorization': `Bearer ${localStorage.getItem('token')}`
+        }
+    });
+    
+    const response = await send();
+    if (response.status !== 401) {
+        return response;
+    }
+    if (await refreshAccessToken()) {
+        return send();
+    }
+    clearSession();
+    showAuth();
+    return response;
+}
+
+// GET с If-None-Match: на 304 возвращается сохраненный ответ, сервер не перечитывает
+// и не сериализует неизменившиеся данные
+async function apiFetchConditional(url, options = {}) {
+    const cached = conditionalCache.get(url);
+    const headers = { ...options.headers };
+    if (cached) {
+        headers['If-None-Match'] = cached.etag;
+    }
+    
+    const response = await apiFetch(url, { ...options, headers });
+    if (response.status === 304 && cached) {
+        return new Response(cached.body, { status: 200, headers: cached.headers });
+    }
+    
+    const etag = response.headers.get('ETag');
+    if (response.ok && etag) {
+        const body = await response.clone().text();
+        // Последний использованный адрес - в конец, самый давний вытесняется
+        conditionalCache.delete(url);
+        conditionalCache.set(url, { etag, body, headers: new Headers(response.headers) });
+        if (conditionalCache.size > CONDITIONAL_CACHE_SIZE) {
+            conditionalCache.delete(conditionalCache.keys().next().value);
+        }
+    }
+    return response;
+}
+
 // Обновить время последней активности
 function updateLastActivity() {
     // Проверяем, что пользователь залогинен
@@ -201,7 +304,7 @@ async function showWorkspace() {
     // Загрузить список пользователей для главной страницы
     await loadUsersList();
     
-    // Запустить автоматическое обновление списка активных пользователей каждые 5 секунд
+    // Подписаться на изменения списка активных пользователей
     startActiveUsersUpdate();
     
     // Запустить отслеживание активности
@@ -237,7 +340,7 @@ async function loadUsersList() {
         }
         
         // Загружаем только активных пользователей
-        const response = await fetch(`${API_BASE_URL}/user/active`, {
+        const response = await apiFetch(`${API_BASE_URL}/user/active?size=${ACTIVE_USERS_PAGE_SIZE}`, {
             headers: {
                 'Authorization': `Bearer ${token}`
             }
@@ -245,30 +348,8 @@ async function loadUsersList() {
         
         if (response.ok) {
             const users = await response.json();
-            const usersList = document.getElementById('users-list');
-            const usersCount = document.getElementById('users-count');
-            
-            if (usersList && usersCount) {
-                // Отображаем количество активных пользователей
-                const count = users.length;
-                usersCount.textContent = `Активных пользователей: ${count}`;
-                
-                // Очищаем список
-                usersList.innerHTML = '';
-                
-                // Добавляем активных пользователей в список
-                users.forEach(user => {
-                    const li = document.createElement('li');
-                    li.style.padding = '8px 0';
-                    li.style.borderBottom = '1px solid #eee';
-                    li.innerHTML = `
-                        <strong>${user.username}</strong> 
-                        <span style="color: #666; margin-left: 10px;">${user.email}</span>
-                        <span style="color: #999; margin-left: 10px; font-size: 12px;">(${user.isAdmin ? 'Администратор' : 'Пользователь'})</span>
-                    `;
-                    usersList.appendChild(li);
-                });
-            }
+            const total = parseInt(response.headers.get('X-Total-Count'), 10) || users.length;
+            renderActiveUsers(users, total);
         } else if (response.status === 403) {
             // Доступ запрещен
             const usersCount = document.getElementById('users-count');
@@ -285,6 +366,35 @@ async function loadUsersList() {
     }
 }
 
+// Отобразить список активных пользователей
+function renderActiveUsers(users, total) {
+    const usersList = document.getElementById('users-list');
+    const usersCount = document.getElementById('users-count');
+    
+    if (usersList && usersCount) {
+        // Отображаем количество активных пользователей (всего, а не только показанных)
+        usersCount.textContent = total > users.length
+            ? `Активных пользователей: ${total} (показаны ${users.length} последних)`
+            : `Активных пользователей: ${total}`;
+        
+        // Очищаем список
+        usersList.innerHTML = '';
+        
+        // Добавляем активных пользователей в список
+        users.forEach(user => {
+            const li = document.createElement('li');
+            li.style.padding = '8px 0';
+            li.style.borderBottom = '1px solid #eee';
+            li.innerHTML = `
+                <strong>${user.username}</strong> 
+                <span style="color: #666; margin-left: 10px;">${user.email}</span>
+                <span style="color: #999; margin-left: 10px; font-size: 12px;">(${user.isAdmin ? 'Администратор' : 'Пользователь'})</span>
+            `;
+            usersList.appendChild(li);
+        });
+    }
+}
+
 // Загрузить информацию о пользоватеle
 async function loadUserInfo() {
     const token = localStorage.getItem('token');
@@ -300,7 +410,7 @@ async function loadUserInfo() {
     }
     
     try {
-        const response = await fetch(`${API_BASE_URL}/user/me`, {
+        const response = await apiFetchConditional(`${API_BASE_URL}/user/me`, {
             headers: {
                 'Authorization': `Bearer ${token}`
             }
@@ -344,8 +454,21 @@ async function loadUserInfo() {
     }
 }
 
-// Загрузить всех пользователей (для администратора)
+// Загрузить первую страницу пользователей (для администратора)
 async function loadAllUsers() {
+    allUsers = [];
+    usersNextCursor = null;
+    await loadUsersPage(true);
+}
+
+// Загрузить следующую страницу пользователей
+async function loadMoreUsers() {
+    if (usersNextCursor === null) return;
+    await loadUsersPage(false);
+}
+
+// Загрузить страницу пользователей по курсору и добавить ее к уже загруженным
+async function loadUsersPage(firstPage) {
     const token = localStorage.getItem('token');
     if (!token) return;
     
@@ -359,8 +482,20 @@ async function loadAllUsers() {
         return; // Пользователь не является администратором
     }
     
+    const params = new URLSearchParams({ size: USERS_PAGE_SIZE });
+    if (!firstPage && usersNextCursor !== null) {
+        params.set('after', usersNextCursor);
+    }
+    if (firstPage) {
+        // Общее количество считается только по запросу; syncUsers перечитывает его при изменениях
+        params.set('count', 'true');
+    }
+    if (usersFilter) {
+        params.set('username', usersFilter);
+    }
+    
     try {
-        const response = await fetch(`${API_BASE_URL}/user/all`, {
+        const response = await apiFetchConditional(`${API_BASE_URL}/user/all?${params}`, {
             headers: {
                 'Authorization': `Bearer ${token}`
             }
@@ -368,10 +503,18 @@ async function loadAllUsers() {
         
         if (response.ok) {
             const users = await response.json();
-            allUsers = users; // Сохраняем список пользователей
+            allUsers = firstPage ? users : allUsers.concat(users); // Сохраняем список пользователей
+            
+            usersNextCursor = response.headers.get('X-Next-Cursor'); // null, если страниц больше нет
+            if (firstPage) {
+                const total = parseInt(response.headers.get('X-Total-Count'), 10);
+                usersTotal = isNaN(total) ? null : total;
+                usersVersion = response.headers.get('X-Change-Version');
+            }
             
             // Применяем текущую сортировку (по умолчанию по имени)
-            sortUsers(currentSort.column);
+            renderSortedUsers();
+            updateUsersPager();
         } else if (response.status === 403) {
             // Доступ запрещен - пользователь не администратор
             // Просто игнорируем, не показываем ошибку
@@ -385,6 +528,99 @@ async function loadAllUsers() {
     }
 }
 
+// Получить изменения списка пользователей после usersVersion и применить их к загруженному
+// списку; если изменения не восстановить, список загружается заново
+async function syncUsers() {
+    if (usersVersion === null) {
+        await loadAllUsers();
+        return;
+    }
+    
+    try {
+        const response = await apiFetch(`${API_BASE_URL}/user/changes?since=${usersVersion}`);
+        if (!response.ok) {
+            await loadAllUsers();
+            return;
+        }
+        const changes = await response.json();
+        if (changes.reset) {
+            await loadAllUsers();
+            return;
+        }
+        applyUserChanges(changes);
+        usersVersion = changes.version;
+        if (changes.users.length > 0 || changes.deleted.length > 0) {
+            await refreshUsersTotal();
+        }
+        renderSortedUsers();
+        updateUsersPager();
+    } catch (error) {
+        console.error('Error syncing users:', error);
+    }
+}
+
+// Применить изменения к загруженным пользователям: удаленные убираются, измененные заменяются.
+// Пользователь попадает в список, только если подходит под фильтр и относится к уже загруженным
+// страницам (id не больше курсора следующей страницы)
+function applyUserChanges(changes) {
+    const byId = new Map(allUsers.map(user => [user.id, user]));
+    const filter = usersFilter.toLowerCase();
+    const loadedUpTo = usersNextCursor !== null ? Number(usersNextCursor) : Infinity;
+    
+    changes.deleted.forEach(id => byId.delete(id));
+    changes.users.forEach(user => {
+        if (user.username.toLowerCase().startsWith(filter) && user.id <= loadedUpTo) {
+            byId.set(user.id, user);
+        } else {
+            byId.delete(user.id);
+        }
+    });
+    
+    allUsers = Array.from(byId.values());
+}
+
+// Перечитать общее количество с сервера: изменения затрагивают и незагруженные страницы,
+// поэтому по загруженным строкам его не пересчитать
+async function refreshUsersTotal() {
+    const params = new URLSearchParams({ size: 1, count: 'true' });
+    if (usersFilter) {
+        params.set('username', usersFilter);
+    }
+    
+    try {
+        const response = await apiFetch(`${API_BASE_URL}/user/all?${params}`);
+        if (response.ok) {
+            const total = parseInt(response.headers.get('X-Total-Count'), 10);
+            usersTotal = isNaN(total) ? null : total;
+        }
+    } catch (error) {
+        console.error('Error loading users count:', error);
+    }
+}
+
+// Обновить счетчик загруженных пользователей и кнопку загрузки следующей страницы
+function updateUsersPager() {
+    const loadMoreBtn = document.getElementById('users-load-more');
+    const usersLoaded = document.getElementById('users-loaded');
+    if (loadMoreBtn) {
+        loadMoreBtn.style.display = usersNextCursor !== null ? 'inline-block' : 'none';
+    }
+    if (usersLoaded) {
+        usersLoaded.textContent = usersTotal !== null
+            ? `Показано ${allUsers.length} из ${usersTotal}`
+            : `Показано ${allUsers.length}`;
+    }
+}
+
+// Поиск пользователей по началу имени (с задержкой, чтобы не отправлять запрос на каждый символ)
+function onUsersFilterInput(value) {
+    clearTimeout(usersFilterTimer);
+    usersFilterTimer = setTimeout(() => {
+        usersFilter = value.trim();
+        loadAllUsers();
+    }, 300);
+}
+
 // Отрисовать таблицу пользователей
 function renderUsersTable(users) {
     const tableBody = document.getElementById('users-table-body');
@@ -430,6 +666,13 @@ function sortUsers(column) {
         currentSort.direction = 'asc';
     }
     
+    renderSortedUsers();
+}
+
+// Отрисовать загруженных пользователей в текущем порядке сортировки
+function renderSortedUsers() {
+    const column = currentSort.column;
+    
     // Сортируем массив пользователей
     const sortedUsers = [...allUsers].sort((a, b) => {
         let aValue, bValue;
@@ -459,7 +702,7 @@ function sortUsers(column) {
         }
         return 0;
     });
-    
+            
             // Перерисовываем таблицу
     renderUsersTable(sortedUsers);
 }
@@ -639,7 +882,7 @@ async function saveUser() {
                 ? `${API_BASE_URL}/user/me`
                 : `${API_BASE_URL}/user/${userId}`;
             
-            response = await fetch(endpoint, {
+            response = await apiFetch(endpoint, {
                 method: 'PUT',
                 headers: {
                     'Content-Type': 'application/json',
@@ -656,7 +899,7 @@ async function saveUser() {
                 isAdmin: isAdmin 
             };
             console.log('Create request body:', JSON.stringify(body));
-            response = await fetch(`${API_BASE_URL}/user/register`, {
+            response = await apiFetch(`${API_BASE_URL}/user/register`, {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
@@ -680,7 +923,7 @@ async function saveUser() {
             
             // Обновить таблицу и закрыть модальное окно
             setTimeout(() => {
-                loadAllUsers();
+                syncUsers();
                 closeUserModal();
             }, 500);
         } else {
@@ -704,7 +947,7 @@ async function deleteUser(userId, username) {
     if (!token) return;
     
     try {
-        const response = await fetch(`${API_BASE_URL}/user/${userId}`, {
+        const response = await apiFetch(`${API_BASE_URL}/user/${userId}`, {
             method: 'DELETE',
             headers: {
                 'Authorization': `Bearer ${token}`
@@ -715,7 +958,7 @@ async function deleteUser(userId, username) {
         
         if (response.ok && data.status === 'success') {
             alert('Пользователь успешно удален');
-            loadAllUsers();
+            syncUsers();
         } else {
             alert(data.message || 'Ошибка удаления пользователя');
         }
@@ -793,22 +1036,104 @@ document.addEventListener('click', function(event) {
     }
 });
 
-// Запустить автоматическое обновление списка активных пользователей
+// Запустить получение изменений списка активных пользователей с сервера (SSE)
 function startActiveUsersUpdate() {
-    // Останавливаем предыдущий интервал, если он существует
+    // Закрываем предыдущее подключение, если оно существует
     stopActiveUsersUpdate();
     
-    // Запускаем обновление каждые 5 секунд (5000 мс)
-    activeUsersUpdateInterval = setInterval(() => {
-        loadUsersList();
-    }, 5000);
+    const isAdmin = currentUser && (currentUser.isAdmin === true || currentUser.admin === true);
+    if (!isAdmin) return;
+    
+    const controller = new AbortController();
+    activeUsersStream = controller;
+    
+    subscribeActiveUsers(controller.signal)
+        .catch(error => {
+            if (!controller.signal.aborted) {
+                console.error('Active users stream error:', error);
+            }
+        })
+        .finally(() => {
+            // Подключение закрыто сервером или оборвалось - переподключаемся
+            if (activeUsersStream === controller && !controller.signal.aborted) {
+                activeUsersReconnectTimer = setTimeout(startActiveUsersUpdate, ACTIVE_USERS_RECONNECT_DELAY);
+            }
+        });
+}
+
+// Прочитать поток событий. EventSource не умеет передавать заголовок Authorization,
+// поэтому поток читается через fetch и разбирается вручную
+async function subscribeActiveUsers(signal) {
+    const token = localStorage.getItem('token');
+    if (!token) return;
+    
+    const response = await apiFetch(`${API_BASE_URL}/user/active/stream`, {
+        headers: {
+            'Authorization': `Bearer ${token}`,
+            'Accept': 'text/event-stream'
+        },
+        signal
+    });
+    if (!response.ok || !response.body) {
+        throw new Error(`Stream request failed: ${response.status}`);
+    }
+    
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    
+    while (true) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += value;
+        
+        // События разделяются пустой строкой
+        let boundary;
+        while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+            const rawEvent = buffer.slice(0, boundary);
+            buffer = buffer.slice(boundary + 2);
+            handleActiveUsersEvent(rawEvent);
+        }
+    }
 }
 
-// Остановить автоматическое обновление списка активных пользователей
+// Применить событие snapshot или delta к списку активных пользователей
+function handleActiveUsersEvent(rawEvent) {
+    let name = 'message';
+    const dataLines = [];
+    rawEvent.split('\n').forEach(line => {
+        if (line.startsWith('event:')) {
+            name = line.slice(6).trim();
+        } else if (line.startsWith('data:')) {
+            dataLines.push(line.slice(5));
+        }
+    });
+    if (dataLines.length === 0) return;
+    const data = JSON.parse(dataLines.join('\n'));
+    
+    if (name === 'snapshot') {
+        activeUsers = new Map(data.users.map(user => [user.id, user]));
+    } else if (name === 'delta') {
+        data.left.forEach(id => activeUsers.delete(id));
+        data.joined.forEach(user => activeUsers.set(user.id, user));
+    } else {
+        return;
+    }
+    
+    // Последние активные - первыми
+    const users = Array.from(activeUsers.values())
+        .sort((a, b) => (b.lastActivity || 0) - (a.lastActivity || 0));
+    renderActiveUsers(users, Math.max(data.total, users.length));
+}
+
+// Остановить получение изменений списка активных пользователей
 function stopActiveUsersUpdate() {
-    if (activeUsersUpdateInterval) {
-        clearInterval(activeUsersUpdateInterval);
-        activeUsersUpdateInterval = null;
+    if (activeUsersReconnectTimer) {
+        clearTimeout(activeUsersReconnectTimer);
+        activeUsersReconnectTimer = null;
+    }
+    if (activeUsersStream) {
+        activeUsersStream.abort();
+        activeUsersStream = null;
     }
 }
 
@@ -821,28 +1146,38 @@ async function logout() {
     stopActivityTracking();
     
     const token = localStorage.getItem('token');
+    const refreshToken = localStorage.getItem('refreshToken');
     
-    // Отправляем запрос на сервер для удаления из списка активных
+    // Отправляем запрос на сервер для удаления из списка активных и отзыва refresh token
     if (token) {
         try {
             await fetch(`${API_BASE_URL}/auth/logout`, {
                 method: 'POST',
                 headers: {
+                    'Content-Type': 'application/json',
                     'Authorization': `Bearer ${token}`
-                }
+                },
+                body: JSON.stringify({ refreshToken })
             });
         } catch (error) {
             console.error('Error during logout:', error);
         }
     }
     
-    // Очищаем локальное хранилище
+    clearSession();
+    showAuth();
+}
+
+// Очистить локальное хранилище
+function clearSession() {
     localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
     localStorage.removeItem('username');
     localStorage.removeItem('isAdmin');
+    conditionalCache.clear();
+    usersVersion = null;
     currentToken = null;
     currentUser = null;
-    showAuth();
 }
 
 // Показать форму аутентификации
@@ -0,0 +1,73 @@
+package com.example.base.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DerivedKeyPairsTest {
+    
+    private static final HexFormat HEX = HexFormat.of();
+    
+    // Открытый ключ Ed25519 - последние 32 байта X.509-кодировки
+    private static byte[] rawEd25519(KeyPair pair) {
+        byte[] encoded = pair.getPublic().getEncoded();
+        return Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length);
+    }
+    
+    @Test
+    void ed25519MatchesRfc8032Vectors() throws Exception {
+        // RFC 8032, раздел 7.1, TEST 1 и TEST 2
+        KeyPair test1 = DerivedKeyPairs.ed25519(HEX.parseHex("9d61b19deffd5a60ba844af492ec2cc44449c5697b326919703bac031cae7f60"));
+        assertArrayEquals(HEX.parseHex("d75a980182b10ab7d54bfed3c964073a0ee172f3daa62325af021a68f707511a"), rawEd25519(test1));
+        
+        KeyPair test2 = DerivedKeyPairs.ed25519(HEX.parseHex("4ccd089b28ff96da9db6c346ec114e0f5b8a319f35aba624da8cf6ed4fb8a6fb"));
+        assertArrayEquals(HEX.parseHex("3d4017c3e843895a92b70aa74d1b7ebc9c982ccf2ec4968cc0cd55f12af4660c"), rawEd25519(test2));
+        
+        // Подпись пустого сообщения из TEST 1
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(test1.getPrivate());
+        assertArrayEquals(HEX.parseHex("e5564300c360ac729086e2cc806e828a84877f1eb8e5d974d873e065224901555fb8821590a33bacc61e39701cf9b46bd25bf5f0595bbe24655141438e7a100b"),
+            signer.sign());
+    }
+    
+    @Test
+    void ecMatchesKnownMultiples() throws Exception {
+        // d = material mod (n - 1) + 1: нулевой материал дает d = 1 (Q = G), единица - d = 2
+        ECPublicKey one = (ECPublicKey) DerivedKeyPairs.ec(new byte[48], "secp256r1").getPublic();
+        assertEquals(new BigInteger("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296", 16), one.getW().getAffineX());
+        assertEquals(new BigInteger("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5", 16), one.getW().getAffineY());
+        
+        byte[] material = new byte[48];
+        material[47] = 1;
+        ECPublicKey two = (ECPublicKey) DerivedKeyPairs.ec(material, "secp256r1").getPublic();
+        assertEquals(new BigInteger("7cf27b188d034f7e8a52380304b51ac3c08969e277f21b35a60b48fc47669978", 16), two.getW().getAffineX());
+        assertEquals(new BigInteger("07775510db8ed040293d9ac69f7430dbba7dade63ce982299e04b79d227873d1", 16), two.getW().getAffineY());
+    }
+    
+    @Test
+    void ecPublicKeyVerifiesPrivateKeySignature() throws Exception {
+        byte[] material = HEX.parseHex("00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff0011223344556677");
+        KeyPair pair = DerivedKeyPairs.ec(material, "secp256r1");
+        byte[] message = "derived".getBytes(StandardCharsets.UTF_8);
+        
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(pair.getPrivate());
+        signer.update(message);
+        byte[] signature = signer.sign();
+        
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(pair.getPublic());
+        verifier.update(message);
+        assertTrue(verifier.verify(signature));
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.base.config;
+
+import com.example.base.dto.UserTokenState;
+import com.example.base.repository.UserRepository;
+import com.example.base.service.ActiveUserService;
+import com.example.base.service.TokenRevocationStore;
+import com.example.base.service.TokenVersionRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Фильтр с настоящим TokenVersionRegistry; разбор токена и БД подменены
+ */
+class JwtAuthenticationFilterTest {
+    
+    private static final String TOKEN = "token";
+    
+    private final JwtUtil jwtUtil = mock(JwtUtil.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final ActiveUserService activeUserService = mock(ActiveUserService.class);
+    private final TokenRevocationStore tokenRevocationStore = mock(TokenRevocationStore.class);
+    
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+    
+    private MockFilterChain chain;
+    
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TokenVersionRegistry tokenVersionRegistry = new TokenVersionRegistry();
+        ReflectionTestUtils.setField(tokenVersionRegistry, "userRepository", userRepository);
+        ReflectionTestUtils.setField(tokenVersionRegistry, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(tokenVersionRegistry, "maxSize", 100L);
+        ReflectionTestUtils.setField(tokenVersionRegistry, "refreshInterval", 60_000L);
+        tokenVersionRegistry.init();
+        
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "activeUserService", activeUserService);
+        ReflectionTestUtils.setField(filter, "tokenVersionRegistry", tokenVersionRegistry);
+        ReflectionTestUtils.setField(filter, "tokenRevocationStore", tokenRevocationStore);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "stateless", true);
+        filter.init();
+        
+        when(jwtUtil.validateToken(anyString(), any())).thenReturn(true);
+        when(userRepository.findTokenStateByUsername("alice")).thenReturn(Optional.of(new UserTokenState() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+            
+            @Override
+            public long getTokenVersion() {
+                return 2;
+            }
+        }));
+        chain = new MockFilterChain();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    private Authentication filter(Claims claims) throws Exception {
+        when(jwtUtil.extractAllClaims(TOKEN)).thenReturn(claims);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/user/me");
+        request.addHeader("Authorization", "Bearer " + TOKEN);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        // Запрос идет дальше по цепочке в любом случае
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+    
+    @Test
+    void statelessPrincipalIsBuiltFromClaims() throws Exception {
+        Authentication authentication = filter(Jwts.claims()
+            .subject("alice")
+            .add(JwtUtil.CLAIM_USER_ID, 1L)
+            .add(JwtUtil.CLAIM_TOKEN_VERSION, 2L)
+            .add(JwtUtil.CLAIM_ROLES, List.of("ROLE_USER", "ROLE_ADMIN"))
+            .build());
+        
+        assertNotNull(authentication);
+        assertEquals("alice", ((UserDetails) authentication.getPrincipal()).getUsername());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), authentication.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .sorted()
+            .toList());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(activeUserService).markUserActive(1L);
+    }
+    
+    @Test
+    void outdatedTokenVersionIsNotAuthenticated() throws Exception {
+        Authentication authentication = filter(Jwts.claims()
+            .subject("alice")
+            .add(JwtUtil.CLAIM_USER_ID, 1L)
+            .add(JwtUtil.CLAIM_TOKEN_VERSION, 1L)
+            .add(JwtUtil.CLAIM_ROLES, List.of("ROLE_USER"))
+            .build());
+        
+        assertNull(authentication);
+        verify(activeUserService, never()).markUserActive(1L);
+    }
+    
+    @Test
+    void deletedUserWithLegacyTokenIsNotAuthenticated() throws Exception {
+        // Токен без ролей и версии проверяется загрузкой пользователя, которого уже нет
+        when(userDetailsService.loadUserByUsername("ghost")).thenThrow(new UsernameNotFoundException("ghost"));
+        
+        Authentication authentication = filter(Jwts.claims().subject("ghost").build());
+        
+        assertNull(authentication);
+        verify(activeUserService, never()).markUserActive("ghost");
+    }
+    
+    @Test
+    void deletedUserWithStatelessTokenIsNotAuthenticated() throws Exception {
+        when(userRepository.findTokenStateByUsername("ghost")).thenReturn(Optional.empty());
+        
+        Authentication authentication = filter(Jwts.claims()
+            .subject("ghost")
+            .add(JwtUtil.CLAIM_USER_ID, 5L)
+            .add(JwtUtil.CLAIM_TOKEN_VERSION, 0L)
+            .add(JwtUtil.CLAIM_ROLES, List.of("ROLE_USER"))
+            .build());
+        
+        assertNull(authentication);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.base.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.Jwks;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.PublicKey;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtKeyRingTest {
+    
+    private static JwtKeyRing keyRing(String algorithm) {
+        JwtKeyRing ring = new JwtKeyRing();
+        ReflectionTestUtils.setField(ring, "secret", "test-secret-test-secret-test-secret-0123456789");
+        ReflectionTestUtils.setField(ring, "expiration", 3_600_000L);
+        ReflectionTestUtils.setField(ring, "algorithm", algorithm);
+        ReflectionTestUtils.setField(ring, "rotationInterval", 86_400_000L);
+        ReflectionTestUtils.setField(ring, "legacyUntil", "");
+        ring.init();
+        return ring;
+    }
+    
+    private static String sign(JwtKeyRing ring, String subject) {
+        JwtKeyRing.SigningKey key = ring.activeKey();
+        return Jwts.builder()
+            .header().keyId(key.kid()).and()
+            .subject(subject)
+            .signWith(key.signingKey())
+            .compact();
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"HS256", "EdDSA", "ES256"})
+    void signedTokenVerifiesOnAnotherNode(String algorithm) {
+        String token = sign(keyRing(algorithm), "alice");
+        
+        // Второй узел с тем же секретом выводит те же ключи
+        Claims claims = keyRing(algorithm).parser().parseSignedClaims(token).getPayload();
+        assertEquals("alice", claims.getSubject());
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"EdDSA", "ES256"})
+    @SuppressWarnings("unchecked")
+    void publishedJwkVerifiesToken(String algorithm) throws Exception {
+        JwtKeyRing ring = keyRing(algorithm);
+        String token = sign(ring, "bob");
+        
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) ring.jwks().get("keys");
+        Map<String, Object> published = keys.stream()
+            .filter(k -> ring.activeKey().kid().equals(k.get("kid")))
+            .findFirst()
+            .orElseThrow();
+        Jwk<?> jwk = Jwks.parser().build().parse(new ObjectMapper().writeValueAsString(published));
+        assertEquals(ring.activeKey().verificationKey(), jwk.toKey());
+        
+        Claims claims = Jwts.parser()
+            .verifyWith((PublicKey) jwk.toKey())
+            .build()
+            .parseSignedClaims(token)
+            .getPayload();
+        assertEquals("bob", claims.getSubject());
+    }
+    
+    @Test
+    void hmacKeysAreNotPublished() {
+        assertTrue(((List<?>) keyRing("HS256").jwks().get("keys")).isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.base.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordEncodersTest {
+    
+    private static PasswordEncoder encoders(String algorithm, int pbkdf2Iterations) {
+        return PasswordEncoders.delegating(algorithm, 4, pbkdf2Iterations, 1000, 1024, 1);
+    }
+    
+    @Test
+    void pbkdf2HashKeepsMatchingAfterIterationChange() {
+        String hash = encoders("pbkdf2", 2000).encode("secret");
+        assertTrue(hash.startsWith("{pbkdf2-2000}"));
+        
+        PasswordEncoder changed = encoders("pbkdf2", 3000);
+        assertTrue(changed.matches("secret", hash));
+        assertFalse(changed.matches("wrong", hash));
+        assertTrue(changed.upgradeEncoding(hash));
+        assertFalse(encoders("pbkdf2", 2000).upgradeEncoding(hash));
+    }
+    
+    @Test
+    void legacyPbkdf2HashUsesLegacyIterations() {
+        String hash = "{pbkdf2}" + PasswordEncoderCalibrator.pbkdf2(1000).encode("secret");
+        
+        PasswordEncoder encoder = encoders("pbkdf2", 2000);
+        assertTrue(encoder.matches("secret", hash));
+        assertTrue(encoder.upgradeEncoding(hash));
+    }
+    
+    @Test
+    void unprefixedHashIsBcrypt() {
+        String hash = new BCryptPasswordEncoder(4).encode("secret");
+        
+        PasswordEncoder encoder = encoders("bcrypt", 2000);
+        assertTrue(encoder.matches("secret", hash));
+        assertTrue(encoder.upgradeEncoding(hash));
+    }
+    
+    @Test
+    void malformedPbkdf2CostDoesNotMatch() {
+        String hash = PasswordEncoderCalibrator.pbkdf2(1000).encode("secret");
+        
+        PasswordEncoder encoder = encoders("pbkdf2", 2000);
+        assertFalse(encoder.matches("secret", "{pbkdf2-x}" + hash));
+        assertFalse(encoder.matches("secret", "{pbkdf2-0}" + hash));
+        assertFalse(encoder.matches("secret", "{pbkdf2-2147483647}" + hash));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.base.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Таймаут 1000 мс, тик 100 мс: ключ отдается, когда весь его слот старше таймаута
+ */
+class ExpiryWheelTest {
+    
+    private final ExpiryWheel<String> wheel = new ExpiryWheel<>(1_000, 100, 0);
+    
+    private List<String> advance(long now) {
+        List<String> candidates = new ArrayList<>();
+        wheel.advance(now, candidates::add);
+        return candidates;
+    }
+    
+    @Test
+    void slotExpiresWhenItsLastMillisecondIsOlderThanTimeout() {
+        wheel.schedule("first", 0);
+        wheel.schedule("last", 99);
+        wheel.schedule("next", 100);
+        
+        // В 1099 запись 0 уже старше таймаута, но 99 еще нет: слот ждет
+        assertTrue(advance(1_099).isEmpty());
+        List<String> expired = advance(1_100);
+        assertEquals(2, expired.size());
+        assertTrue(expired.containsAll(List.of("first", "last")));
+        
+        assertTrue(advance(1_199).isEmpty());
+        assertEquals(List.of("next"), advance(1_200));
+    }
+    
+    @Test
+    void rescheduledKeyExpiresFromItsNewSlot() {
+        wheel.schedule("user", 50);
+        
+        // Поворот отдает ключ, вызывающая сторона видит новую активность и переносит его
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1_100, key -> {
+            expired.add(key);
+            wheel.schedule(key, 1_050);
+        });
+        assertEquals(List.of("user"), expired);
+        
+        assertTrue(advance(2_099).isEmpty());
+        assertEquals(List.of("user"), advance(2_100));
+        assertTrue(advance(5_000).isEmpty());
+    }
+    
+    @Test
+    void lateAdvanceSweepsEveryKeyOnce() {
+        for (int i = 0; i < 30; i++) {
+            wheel.schedule("key" + i, i * 30L);
+        }
+        
+        // Пауза длиннее оборота колеса: все слоты просматриваются один раз
+        List<String> expired = advance(100_000);
+        assertEquals(30, expired.size());
+        assertEquals(30, expired.stream().distinct().count());
+        assertTrue(advance(100_100).isEmpty());
+    }
+}
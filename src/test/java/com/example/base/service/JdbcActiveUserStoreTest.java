@@ -0,0 +1,136 @@
+package com.example.base.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Два узла с общей таблицей user_presence во встроенной H2
+ */
+class JdbcActiveUserStoreTest {
+    
+    private static final long TIMEOUT = 1_800_000;
+    private static final long READ_CACHE_TTL = 2_000;
+    private static final long USER = 1;
+    
+    private final TestClock clock = new TestClock();
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    private JdbcActiveUserStore nodeA;
+    
+    private JdbcActiveUserStore nodeB;
+    
+    /**
+     * Часы, которые двигает тест
+     */
+    private static final class TestClock extends CoarseClock {
+        
+        private long now = 1_000_000_000L;
+        
+        @Override
+        public long millis() {
+            return now;
+        }
+        
+        void advance(long millis) {
+            now += millis;
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:presence;DB_CLOSE_DELAY=-1", "sa", ""));
+        // Та же схема, что создает Hibernate по сущности UserPresence
+        jdbcTemplate.execute("CREATE TABLE user_presence (user_id BIGINT PRIMARY KEY, last_seen BIGINT NOT NULL, " +
+            "removed_at BIGINT DEFAULT 0 NOT NULL)");
+        nodeA = node();
+        nodeB = node();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE user_presence");
+    }
+    
+    @Test
+    void removalOnOtherNodeDropsLocalActivity() {
+        nodeB.touch(USER, clock.millis());
+        nodeB.flush();
+        
+        clock.advance(1_000);
+        nodeA.remove(USER);
+        
+        clock.advance(READ_CACHE_TTL + 1);
+        assertEquals(0, nodeB.count());
+        assertEquals(ActiveUserStore.ABSENT, nodeB.getLastActivity(USER));
+        
+        // Сброс после удаления не возвращает пользователя
+        nodeB.flush();
+        assertEquals(0, nodeA.count());
+    }
+    
+    @Test
+    void staleFlushAfterRemovalKeepsUserInactive() {
+        nodeB.touch(USER, clock.millis());
+        
+        clock.advance(1_000);
+        nodeA.remove(USER);
+        
+        // Узел B еще не видел удаления и записывает отметку, сделанную до него
+        nodeB.flush();
+        
+        clock.advance(READ_CACHE_TTL + 1);
+        assertEquals(0, nodeA.count());
+        assertEquals(0, nodeB.count());
+    }
+    
+    @Test
+    void activityAfterRemovalMakesUserActiveAgain() {
+        nodeB.touch(USER, clock.millis());
+        nodeB.flush();
+        
+        clock.advance(1_000);
+        nodeA.remove(USER);
+        
+        clock.advance(1_000);
+        nodeB.touch(USER, clock.millis());
+        nodeB.flush();
+        
+        clock.advance(READ_CACHE_TTL + 1);
+        assertEquals(1, nodeA.count());
+        assertEquals(clock.millis() - READ_CACHE_TTL - 1, nodeA.getLastActivity(USER));
+        assertEquals(1, nodeB.count());
+    }
+    
+    @Test
+    void removalMarkerExpiresWithInactivityTimeout() {
+        nodeA.remove(USER);
+        assertEquals(1, rows());
+        
+        clock.advance(TIMEOUT + 1);
+        nodeA.flush();
+        assertEquals(0, rows());
+    }
+    
+    private JdbcActiveUserStore node() {
+        JdbcActiveUserStore store = new JdbcActiveUserStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(store, "clock", clock);
+        ReflectionTestUtils.setField(store, "inactivityTimeout", TIMEOUT);
+        ReflectionTestUtils.setField(store, "writeGranularity", 1_000L);
+        ReflectionTestUtils.setField(store, "readCacheTtl", READ_CACHE_TTL);
+        ReflectionTestUtils.setField(store, "batchSize", 500);
+        store.init();
+        return store;
+    }
+    
+    private int rows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_presence", Integer.class);
+    }
+}
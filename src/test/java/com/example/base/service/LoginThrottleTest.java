@@ -0,0 +1,169 @@
+package com.example.base.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThrottleTest {
+    
+    private static final String ALICE = "alice";
+    private static final String OWNER_IP = "10.0.0.1";
+    private static final String ATTACKER_IP = "10.0.0.2";
+    
+    private final TestClock clock = new TestClock();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private LoginThrottle throttle;
+    
+    /**
+     * Часы, которые двигает тест
+     */
+    private static final class TestClock extends CoarseClock {
+        
+        private long now = 1_000_000_000L;
+        
+        @Override
+        public long millis() {
+            return now;
+        }
+        
+        void advance(long millis) {
+            now += millis;
+        }
+    }
+    
+    private LoginThrottle throttle(int pairCapacity, int ipCapacity, long maxKeys) {
+        LoginThrottle throttle = new LoginThrottle();
+        ReflectionTestUtils.setField(throttle, "clock", clock);
+        ReflectionTestUtils.setField(throttle, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "pairCapacity", pairCapacity);
+        ReflectionTestUtils.setField(throttle, "pairRefillInterval", 1_000L);
+        ReflectionTestUtils.setField(throttle, "ipCapacity", ipCapacity);
+        ReflectionTestUtils.setField(throttle, "ipRefillInterval", 500L);
+        ReflectionTestUtils.setField(throttle, "usernameCapacity", 4);
+        ReflectionTestUtils.setField(throttle, "usernameRefillInterval", 10_000L);
+        ReflectionTestUtils.setField(throttle, "freeFailures", 2);
+        ReflectionTestUtils.setField(throttle, "backoffBase", 1_000L);
+        ReflectionTestUtils.setField(throttle, "backoffMax", 4_000L);
+        ReflectionTestUtils.setField(throttle, "maxKeys", maxKeys);
+        ReflectionTestUtils.setField(throttle, "idleTimeout", 900_000L);
+        throttle.init();
+        return throttle;
+    }
+    
+    private long rejectedAfter(String username, String address) {
+        return assertThrows(LoginThrottledException.class, () -> throttle.acquire(username, address)).getRetryAfter();
+    }
+    
+    @Test
+    void pairBucketRefillsOneTokenPerInterval() {
+        throttle = throttle(3, 100, 100);
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire(ALICE, OWNER_IP);
+        }
+        assertEquals(1_000, rejectedAfter(ALICE, OWNER_IP));
+        
+        clock.advance(400);
+        assertEquals(600, rejectedAfter(ALICE, OWNER_IP));
+        clock.advance(600);
+        throttle.acquire(ALICE, OWNER_IP);
+        assertEquals(1_000, rejectedAfter(ALICE, OWNER_IP));
+    }
+    
+    @Test
+    void attackerCannotLockOutOwner() {
+        throttle = throttle(3, 100, 100);
+        // Чужой клиент исчерпывает свою корзину и уходит в паузу неудачами
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire(ALICE, ATTACKER_IP);
+            throttle.onFailure(ALICE, ATTACKER_IP);
+        }
+        rejectedAfter(ALICE, ATTACKER_IP);
+        
+        assertDoesNotThrow(() -> throttle.acquire(ALICE, OWNER_IP));
+        throttle.onSuccess(ALICE, OWNER_IP);
+    }
+    
+    @Test
+    void backoffDoublesAfterFreeFailuresAndResetsOnSuccess() {
+        throttle = throttle(100, 100, 100);
+        // Общий предел имени здесь не вмешивается
+        ReflectionTestUtils.setField(throttle, "usernameCapacity", 100);
+        throttle.onFailure(ALICE, OWNER_IP);
+        throttle.onFailure(ALICE, OWNER_IP);
+        throttle.acquire(ALICE, OWNER_IP);
+        
+        throttle.onFailure(ALICE, OWNER_IP);
+        assertEquals(1_000, rejectedAfter(ALICE, OWNER_IP));
+        clock.advance(1_000);
+        throttle.acquire(ALICE, OWNER_IP);
+        throttle.onFailure(ALICE, OWNER_IP);
+        assertEquals(2_000, rejectedAfter(ALICE, OWNER_IP));
+        
+        clock.advance(2_000);
+        throttle.acquire(ALICE, OWNER_IP);
+        throttle.onSuccess(ALICE, OWNER_IP);
+        // Серия начинается заново: снова две неудачи без паузы
+        throttle.onFailure(ALICE, OWNER_IP);
+        throttle.onFailure(ALICE, OWNER_IP);
+        throttle.acquire(ALICE, OWNER_IP);
+    }
+    
+    @Test
+    void exhaustedUsernameLimitRemovesFreeFailuresOnly() {
+        throttle = throttle(100, 100, 100);
+        // Четыре неудачи с разных адресов исчерпывают общий предел имени
+        for (int i = 0; i < 4; i++) {
+            throttle.onFailure(ALICE, "10.1.0." + i);
+        }
+        
+        // Новый адрес без неудач проходит, но пауза включается с первой его неудачи
+        throttle.acquire(ALICE, "10.2.0.1");
+        throttle.onFailure(ALICE, "10.2.0.1");
+        assertEquals(1_000, rejectedAfter(ALICE, "10.2.0.1"));
+        assertDoesNotThrow(() -> throttle.acquire(ALICE, OWNER_IP));
+    }
+    
+    @Test
+    void rejectedAttemptSpendsNoOtherToken() {
+        throttle = throttle(1, 1, 100);
+        throttle.acquire("bob", OWNER_IP);
+        // Отказ по IP возвращает токен пары: повторный отказ - снова по IP, а не по паре
+        assertEquals(500, rejectedAfter(ALICE, OWNER_IP));
+        assertEquals(500, rejectedAfter(ALICE, OWNER_IP));
+        
+        clock.advance(500);
+        throttle.acquire(ALICE, OWNER_IP);
+        clock.advance(500);
+        // Отказ по паре не расходует токен IP
+        assertEquals(500, rejectedAfter(ALICE, OWNER_IP));
+        assertEquals(500, rejectedAfter(ALICE, OWNER_IP));
+        throttle.acquire("bob", OWNER_IP);
+        
+        assertEquals(2, meterRegistry.counter("auth.login.throttled", "key", "ip").count());
+        assertEquals(2, meterRegistry.counter("auth.login.throttled", "key", "username-ip").count());
+    }
+    
+    @Test
+    void keysAreBoundedByMaxKeys() {
+        throttle = throttle(3, 100_000, 50);
+        for (int i = 0; i < 1_000; i++) {
+            throttle.acquire("user" + i, "10.0." + (i / 256) + "." + (i % 256));
+        }
+        
+        ((Cache<?, ?>) ReflectionTestUtils.getField(throttle, "pairs")).cleanUp();
+        ((Cache<?, ?>) ReflectionTestUtils.getField(throttle, "addresses")).cleanUp();
+        double pairs = meterRegistry.get("auth.login.throttle.keys").tag("key", "username-ip").gauge().value();
+        double addresses = meterRegistry.get("auth.login.throttle.keys").tag("key", "ip").gauge().value();
+        assertTrue(pairs <= 50, "pairs: " + pairs);
+        assertTrue(addresses <= 50, "addresses: " + addresses);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.base.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.base.service.LongLongPresenceTable.ABSENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongLongPresenceTableTest {
+    
+    @Test
+    void touchCoalescesWithinGranularity() {
+        LongLongPresenceTable table = new LongLongPresenceTable(1, 16);
+        
+        assertEquals(ABSENT, table.touch(7, 1_000, 100));
+        assertEquals(1_000, table.touch(7, 1_050, 100));
+        // Сдвиг меньше гранулярности не записывается
+        assertEquals(1_000, table.get(7));
+        assertEquals(1_000, table.touch(7, 1_100, 100));
+        assertEquals(1_100, table.get(7));
+        assertEquals(ABSENT, table.get(8));
+    }
+    
+    @Test
+    void conditionalRemoveKeepsUpdatedValue() {
+        LongLongPresenceTable table = new LongLongPresenceTable(1, 16);
+        table.touch(7, 1_000, 0);
+        table.touch(7, 2_000, 0);
+        
+        assertFalse(table.remove(7, 1_000));
+        assertEquals(2_000, table.get(7));
+        assertTrue(table.remove(7, 2_000));
+        assertEquals(ABSENT, table.get(7));
+        assertEquals(ABSENT, table.remove(7));
+    }
+    
+    @Test
+    void backwardShiftDeleteKeepsProbeChains() {
+        // Один маленький сегмент: длинные цепочки пробирования, переходы через конец массива и рост таблицы
+        LongLongPresenceTable table = new LongLongPresenceTable(1, 16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 20_000; i++) {
+            long key = 1 + random.nextInt(64);
+            if (random.nextInt(3) == 0) {
+                Long previous = expected.remove(key);
+                assertEquals(previous == null ? ABSENT : previous, table.remove(key));
+            } else {
+                long value = i + 1;
+                Long previous = expected.put(key, value);
+                assertEquals(previous == null ? ABSENT : previous, table.touch(key, value, 0));
+            }
+            for (long k = 1; k <= 64; k++) {
+                Long value = expected.get(k);
+                assertEquals(value == null ? ABSENT : value, table.get(k), "key " + k + " after step " + i);
+            }
+        }
+        
+        Map<Long, Long> visited = new HashMap<>();
+        table.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+    
+    @Test
+    void optimisticReadsSeeStableKeysDuringWrites() throws Exception {
+        LongLongPresenceTable table = new LongLongPresenceTable(2, 16);
+        for (long key = 1; key <= 100; key++) {
+            table.touch(key, key * 10, 0);
+        }
+        
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong wrongReads = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // Писатель вставляет и удаляет другие ключи: сдвиги цепочек и рост массива
+            Future<?> writer = executor.submit(() -> {
+                for (int round = 0; round < 200; round++) {
+                    for (long key = 1_000; key < 1_500; key++) {
+                        table.touch(key, round, 0);
+                    }
+                    for (long key = 1_000; key < 1_500; key++) {
+                        table.remove(key);
+                    }
+                }
+                stop.set(true);
+            });
+            Runnable reader = () -> {
+                while (!stop.get()) {
+                    for (long key = 1; key <= 100; key++) {
+                        if (table.get(key) != key * 10) {
+                            wrongReads.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            Future<?> reader1 = executor.submit(reader);
+            Future<?> reader2 = executor.submit(reader);
+            writer.get(60, TimeUnit.SECONDS);
+            reader1.get(60, TimeUnit.SECONDS);
+            reader2.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, wrongReads.get());
+    }
+    
+    @Test
+    void concurrentTouchesOfOneKeyCoalesce() throws Exception {
+        LongLongPresenceTable table = new LongLongPresenceTable(1, 16);
+        int threads = 8;
+        AtomicInteger inserted = new AtomicInteger();
+        AtomicInteger changed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    // 8 потоков x 10 000 обращений с шагом 10 при гранулярности 100
+                    for (long now = 0; now < 100_000; now += 10) {
+                        long previous = table.touch(5, now, 100);
+                        if (previous == ABSENT) {
+                            inserted.incrementAndGet();
+                        } else if (now - previous >= 100) {
+                            changed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(1, inserted.get());
+        // Записанные значения отстоят друг от друга не меньше чем на гранулярность, сколько бы потоков ни пришло
+        assertTrue(changed.get() <= 999, "writes: " + changed.get());
+        long last = table.get(5);
+        assertTrue(last > 99_990 - 100 && last <= 99_990, "last: " + last);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.base.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ротация во встроенной H2; транзакцию, которую в приложении открывает
+ * прокси @Transactional, здесь открывает TransactionTemplate
+ */
+class RefreshTokenServiceTest {
+    
+    private static final long USER = 1;
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private RefreshTokenService service;
+    
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:refresh;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        // Та же схема, что в database/init.sql
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, username VARCHAR(100) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE refresh_tokens (token_hash VARCHAR(64) PRIMARY KEY, user_id BIGINT NOT NULL, " +
+            "family_id VARCHAR(36) NOT NULL, token_version BIGINT NOT NULL, expires_at BIGINT NOT NULL, used_at BIGINT, " +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE)");
+        jdbcTemplate.update("INSERT INTO users (id, username) VALUES (?, ?)", USER, "alice");
+        
+        meterRegistry = new SimpleMeterRegistry();
+        service = new RefreshTokenService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "expiration", 60_000L);
+        ReflectionTestUtils.setField(service, "purgeBatchSize", 1_000);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE refresh_tokens");
+        jdbcTemplate.execute("DROP TABLE users");
+    }
+    
+    private Optional<RefreshTokenService.Rotation> rotate(String refreshToken) {
+        return transactionTemplate.execute(status -> service.rotate(refreshToken));
+    }
+    
+    private double outcomes(String outcome) {
+        return meterRegistry.counter("auth.refresh", "outcome", outcome).count();
+    }
+    
+    @Test
+    void rotationKeepsFamilyAndOwner() {
+        String first = service.issue(USER, 4);
+        RefreshTokenService.Rotation rotation = rotate(first).orElseThrow();
+        
+        assertEquals(USER, rotation.userId());
+        assertEquals("alice", rotation.username());
+        assertEquals(4, rotation.tokenVersion());
+        assertNotEquals(first, rotation.refreshToken());
+        RefreshTokenService.Rotation next = rotate(rotation.refreshToken()).orElseThrow();
+        assertEquals(rotation.familyId(), next.familyId());
+    }
+    
+    @Test
+    void reusedTokenRevokesWholeFamilyOnly() {
+        String stolen = service.issue(USER, 0);
+        String other = service.issue(USER, 0);
+        String current = rotate(stolen).orElseThrow().refreshToken();
+        
+        // Второе предъявление использованного токена: отзывается вся цепочка, включая текущий токен
+        assertTrue(rotate(stolen).isEmpty());
+        assertEquals(1, outcomes("reuse"));
+        assertTrue(rotate(current).isEmpty());
+        assertEquals(1, outcomes("invalid"));
+        
+        assertTrue(rotate(other).isPresent());
+    }
+    
+    @Test
+    void unknownAndExpiredTokensAreRejected() {
+        assertTrue(rotate("unknown").isEmpty());
+        ReflectionTestUtils.setField(service, "expiration", -1L);
+        assertTrue(rotate(service.issue(USER, 0)).isEmpty());
+        
+        assertEquals(1, outcomes("invalid"));
+        assertEquals(1, outcomes("expired"));
+        service.purge();
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM refresh_tokens", Integer.class));
+    }
+    
+    @Test
+    void concurrentRotationOfOneTokenSucceedsOnceAndRevokesFamily() throws Exception {
+        String token = service.issue(USER, 0);
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Optional<RefreshTokenService.Rotation>> results = new ArrayList<>();
+        try {
+            List<Future<Optional<RefreshTokenService.Rotation>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return rotate(token);
+                }));
+            }
+            start.countDown();
+            for (Future<Optional<RefreshTokenService.Rotation>> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        List<RefreshTokenService.Rotation> succeeded = results.stream().flatMap(Optional::stream).toList();
+        assertEquals(1, succeeded.size());
+        // Первый проигравший отзывает цепочку; следующие уже не находят токен
+        assertTrue(outcomes("reuse") >= 1);
+        assertEquals(threads - 1, outcomes("reuse") + outcomes("invalid"));
+        // Повторное предъявление отозвало и токен, выданный победителю
+        assertFalse(rotate(succeeded.get(0).refreshToken()).isPresent());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM refresh_tokens", Integer.class));
+    }
+}
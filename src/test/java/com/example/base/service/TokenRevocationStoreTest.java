@@ -0,0 +1,134 @@
+package com.example.base.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Два узла с общей таблицей revoked_tokens во встроенной H2
+ */
+class TokenRevocationStoreTest {
+    
+    private static final long HOUR = 3_600_000;
+    private static final long SYNC_INTERVAL = 5_000;
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    private SimpleMeterRegistry meterRegistryA;
+    
+    private TokenRevocationStore nodeA;
+    
+    private TokenRevocationStore nodeB;
+    
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:revocation;DB_CLOSE_DELAY=-1", "sa", ""));
+        // Та же схема, что в database/init.sql
+        jdbcTemplate.execute("CREATE TABLE revoked_tokens (jti VARCHAR(64) PRIMARY KEY, expires_at BIGINT NOT NULL, " +
+            "revoked_at BIGINT NOT NULL)");
+        meterRegistryA = new SimpleMeterRegistry();
+        nodeA = node(meterRegistryA, HOUR);
+        nodeB = node(new SimpleMeterRegistry(), HOUR);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE revoked_tokens");
+    }
+    
+    private TokenRevocationStore node(SimpleMeterRegistry meterRegistry, long bucketInterval) {
+        TokenRevocationStore store = new TokenRevocationStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(store, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(store, "bucketInterval", bucketInterval);
+        ReflectionTestUtils.setField(store, "expectedPerBucket", 1_000);
+        ReflectionTestUtils.setField(store, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(store, "syncInterval", SYNC_INTERVAL);
+        store.init();
+        return store;
+    }
+    
+    private static Claims token(String jti, long expiresAt) {
+        return Jwts.claims().id(jti).subject("alice").expiration(new Date(expiresAt)).build();
+    }
+    
+    @Test
+    void revokedTokenIsFoundAndOthersPassDespiteFalsePositives() {
+        long expiresAt = System.currentTimeMillis() + HOUR / 2;
+        for (int i = 0; i < 1_000; i++) {
+            nodeA.revoke(token("revoked-" + i, expiresAt));
+        }
+        
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(nodeA.isRevoked(token("revoked-" + i, expiresAt)));
+        }
+        // Ложное срабатывание фильтра Блума отсекает точное множество
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(nodeA.isRevoked(token("valid-" + i, expiresAt)));
+        }
+        double falsePositives = meterRegistryA.counter("jwt.revocation.checks", "result", "false-positive").count();
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertEquals(1_000, meterRegistryA.counter("jwt.revocation.checks", "result", "revoked").count());
+    }
+    
+    @Test
+    void tokenWithoutJtiIsNotRevocable() {
+        Claims legacy = Jwts.claims().subject("alice").expiration(new Date(System.currentTimeMillis() + HOUR)).build();
+        nodeA.revoke(legacy);
+        
+        assertFalse(nodeA.isRevoked(legacy));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Integer.class));
+    }
+    
+    @Test
+    void revocationReachesOtherNodeOnSync() {
+        Claims claims = token("logout", System.currentTimeMillis() + HOUR);
+        nodeA.revoke(claims);
+        assertFalse(nodeB.isRevoked(claims));
+        
+        nodeB.sync();
+        assertTrue(nodeB.isRevoked(claims));
+        // Повторный отзыв того же токена на другом узле не ошибка
+        nodeB.revoke(claims);
+    }
+    
+    @Test
+    void syncWindowOverlapsForSkewedClocks() {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)", "first", now + HOUR, now);
+        nodeB.sync();
+        
+        // Узел с отстающими часами записал отзыв раньше уже загруженного
+        jdbcTemplate.update("INSERT INTO revoked_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)",
+            "late", now + HOUR, now - SYNC_INTERVAL / 2);
+        nodeB.sync();
+        assertTrue(nodeB.isRevoked(token("late", now + HOUR)));
+    }
+    
+    @Test
+    void purgeDropsExpiredBucketsAndRows() throws InterruptedException {
+        TokenRevocationStore store = node(new SimpleMeterRegistry(), 50);
+        // exp хранится в секундах: срок - начало секунды, которая наступит не раньше чем через секунду
+        long expiresAt = (System.currentTimeMillis() / 1_000 + 2) * 1_000;
+        Claims claims = token("short", expiresAt);
+        store.revoke(claims);
+        assertTrue(store.isRevoked(claims));
+        
+        Thread.sleep(Math.max(0, expiresAt + 100 - System.currentTimeMillis()));
+        store.purge();
+        assertFalse(store.isRevoked(claims));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revoked_tokens", Integer.class));
+    }
+}
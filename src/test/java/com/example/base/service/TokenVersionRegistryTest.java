@@ -0,0 +1,83 @@
+package com.example.base.service;
+
+import com.example.base.dto.UserTokenState;
+import com.example.base.event.UserChangedEvent;
+import com.example.base.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenVersionRegistryTest {
+    
+    private final UserRepository userRepository = mock(UserRepository.class);
+    
+    private final TokenVersionRegistry registry = new TokenVersionRegistry();
+    
+    private static Optional<UserTokenState> state(long id, long tokenVersion) {
+        return Optional.of(new UserTokenState() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+            
+            @Override
+            public long getTokenVersion() {
+                return tokenVersion;
+            }
+        });
+    }
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "userRepository", userRepository);
+        ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "maxSize", 100L);
+        ReflectionTestUtils.setField(registry, "refreshInterval", 60_000L);
+        registry.init();
+    }
+    
+    @Test
+    void tokenMatchesOwnerAndVersionFromOneLookup() {
+        when(userRepository.findTokenStateByUsername("alice")).thenReturn(state(1, 3));
+        
+        assertTrue(registry.isCurrent("alice", 1, 3));
+        assertFalse(registry.isCurrent("alice", 1, 2));
+        // Имя занято другим пользователем (удален и создан заново)
+        assertFalse(registry.isCurrent("alice", 7, 3));
+        verify(userRepository, times(1)).findTokenStateByUsername("alice");
+    }
+    
+    @Test
+    void deletedUserIsNeverCurrent() {
+        when(userRepository.findTokenStateByUsername("ghost")).thenReturn(Optional.empty());
+        
+        assertFalse(registry.isCurrent("ghost", 1, 0));
+        assertFalse(registry.isCurrent("ghost", -1, -1));
+    }
+    
+    @Test
+    void userChangeReloadsVersion() {
+        when(userRepository.findTokenStateByUsername("alice")).thenReturn(state(1, 0));
+        assertTrue(registry.isCurrent("alice", 1, 0));
+        
+        // Смена пароля повысила версию; переименование освобождает прежнее имя
+        when(userRepository.findTokenStateByUsername("alice")).thenReturn(state(1, 1));
+        registry.onUserChanged(UserChangedEvent.updated(1L, "alice", "alice"));
+        assertFalse(registry.isCurrent("alice", 1, 0));
+        assertTrue(registry.isCurrent("alice", 1, 1));
+        
+        when(userRepository.findTokenStateByUsername("alice")).thenReturn(Optional.empty());
+        registry.onUserChanged(UserChangedEvent.updated(1L, "alice", "alice2"));
+        assertFalse(registry.isCurrent("alice", 1, 1));
+    }
+}
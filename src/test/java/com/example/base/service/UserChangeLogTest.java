@@ -0,0 +1,162 @@
+package com.example.base.service;
+
+import com.example.base.dto.UserChanges;
+import com.example.base.dto.UserInfo;
+import com.example.base.event.UserChangedEvent;
+import com.example.base.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Журнал во встроенной H2; выборку пользователей JPA заменяет тот же запрос через JDBC
+ */
+class UserChangeLogTest {
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    private UserChangeLog changeLog;
+    
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1", "sa", "");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // Та же схема, что в database/init.sql
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, username VARCHAR(100) NOT NULL, " +
+            "change_seq BIGINT DEFAULT 0 NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE user_change_counter (id INTEGER PRIMARY KEY, seq BIGINT NOT NULL, purged_seq BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE user_tombstones (user_id BIGINT PRIMARY KEY, change_seq BIGINT NOT NULL, deleted_at BIGINT NOT NULL)");
+        for (long id = 1; id <= 5; id++) {
+            jdbcTemplate.update("INSERT INTO users (id, username) VALUES (?, ?)", id, "user" + id);
+        }
+        
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findUserInfoChangedBetween(anyLong(), anyLong(), any(Limit.class))).thenAnswer(invocation ->
+            jdbcTemplate.query("SELECT id, username FROM users WHERE change_seq > ? AND change_seq <= ? ORDER BY change_seq LIMIT ?",
+                (rs, rowNum) -> new UserInfo(rs.getLong(1), rs.getString(2), rs.getString(2) + "@example.com", false),
+                invocation.getArgument(0), invocation.getArgument(1), invocation.<Limit>getArgument(2).max()));
+        
+        changeLog = new UserChangeLog();
+        ReflectionTestUtils.setField(changeLog, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(changeLog, "userRepository", userRepository);
+        ReflectionTestUtils.setField(changeLog, "entityManager", mock(EntityManager.class));
+        ReflectionTestUtils.setField(changeLog, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(changeLog, "tombstoneRetention", 0L);
+        changeLog.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE users");
+        jdbcTemplate.execute("DROP TABLE user_change_counter");
+        jdbcTemplate.execute("DROP TABLE user_tombstones");
+    }
+    
+    private static List<Long> ids(UserChanges changes) {
+        return changes.getUsers().stream().map(UserInfo::getId).toList();
+    }
+    
+    @Test
+    void eventOutsideTransactionGetsItsOwnNumber() {
+        changeLog.onUserChanged(UserChangedEvent.updated(1L, "user1", "user1"));
+        changeLog.onUserChanged(UserChangedEvent.deleted(2L, "user2"));
+        assertEquals(2, changeLog.currentVersion());
+        
+        UserChanges changes = changeLog.changesSince(0, 10);
+        assertEquals(2, changes.getVersion());
+        assertEquals(List.of(1L), ids(changes));
+        assertEquals(List.of(2L), changes.getDeleted());
+        
+        changes = changeLog.changesSince(1, 10);
+        assertEquals(List.of(), ids(changes));
+        assertEquals(List.of(2L), changes.getDeleted());
+    }
+    
+    @Test
+    void transactionGetsOneNumberForAllChanges() {
+        transactionTemplate.executeWithoutResult(status -> {
+            changeLog.onUserChanged(UserChangedEvent.created(3L, "user3"));
+            changeLog.onUserChanged(UserChangedEvent.updated(4L, "user4", "user4"));
+            // Созданный и удаленный в той же транзакции оставляет только отметку об удалении
+            changeLog.onUserChanged(UserChangedEvent.created(5L, "user5"));
+            changeLog.onUserChanged(UserChangedEvent.deleted(5L, "user5"));
+        });
+        
+        assertEquals(1, changeLog.currentVersion());
+        UserChanges changes = changeLog.changesSince(0, 10);
+        assertEquals(List.of(3L, 4L), ids(changes).stream().sorted().toList());
+        assertEquals(List.of(5L), changes.getDeleted());
+    }
+    
+    @Test
+    void rolledBackTransactionTakesNoNumber() {
+        transactionTemplate.executeWithoutResult(status -> {
+            changeLog.onUserChanged(UserChangedEvent.updated(1L, "user1", "user1"));
+            status.setRollbackOnly();
+        });
+        
+        assertEquals(0, changeLog.currentVersion());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT change_seq FROM users WHERE id = 1", Long.class));
+    }
+    
+    @Test
+    void sinceAheadOfCounterResets() {
+        changeLog.onUserChanged(UserChangedEvent.updated(1L, "user1", "user1"));
+        
+        // Клиент пришел с номером другой базы или после ее восстановления
+        UserChanges changes = changeLog.changesSince(7, 10);
+        assertTrue(changes.isReset());
+        assertEquals(1, changes.getVersion());
+        
+        changes = changeLog.changesSince(1, 10);
+        assertFalse(changes.isReset());
+        assertTrue(changes.getUsers().isEmpty());
+    }
+    
+    @Test
+    void sinceBeforePurgedTombstonesResets() {
+        changeLog.onUserChanged(UserChangedEvent.deleted(1L, "user1"));
+        changeLog.onUserChanged(UserChangedEvent.deleted(2L, "user2"));
+        changeLog.onUserChanged(UserChangedEvent.updated(3L, "user3", "user3"));
+        
+        transactionTemplate.executeWithoutResult(status -> changeLog.purge());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_tombstones", Integer.class));
+        
+        // Удаления до номера 2 больше не восстановить
+        assertTrue(changeLog.changesSince(1, 10).isReset());
+        UserChanges changes = changeLog.changesSince(2, 10);
+        assertFalse(changes.isReset());
+        assertEquals(List.of(3L), ids(changes));
+    }
+    
+    @Test
+    void moreChangesThanLimitReset() {
+        for (long id = 1; id <= 3; id++) {
+            changeLog.onUserChanged(UserChangedEvent.updated(id, "user" + id, "user" + id));
+        }
+        
+        assertTrue(changeLog.changesSince(0, 2).isReset());
+        assertEquals(List.of(2L, 3L), ids(changeLog.changesSince(1, 2)));
+    }
+}